@@ -0,0 +1,50 @@
+package com.jwebmp.vertx.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.jwebmp.core.base.ajax.AjaxCall;
+import io.vertx.core.json.jackson.DatabindCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of an AJAX request body, into a new call and into an existing call scoped instance
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AjaxCallBenchmark
+{
+    private static final String CALL = """
+            {"className":"com_jwebmp_examples_SaveEvent","componentId":"button_12","eventType":"click",
+             "parameters":{"page":"1","sort":"name","filter":"abc"}}""";
+
+    private byte[] body;
+    private ObjectReader reader;
+
+    @Setup
+    public void setup(GuiceContextState context)
+    {
+        body = CALL.getBytes(StandardCharsets.UTF_8);
+        reader = DatabindCodec.mapper()
+                              .readerFor(AjaxCall.class);
+    }
+
+    @Benchmark
+    public AjaxCall<?> readNew() throws IOException
+    {
+        return reader.readValue(body);
+    }
+
+    @Benchmark
+    public AjaxCall<?> readIntoExisting() throws IOException
+    {
+        return reader.withValueToUpdate(new AjaxCall<>())
+                     .readValue(body);
+    }
+}
@@ -0,0 +1,45 @@
+package com.jwebmp.vertx.benchmarks;
+
+import com.jwebmp.core.base.ajax.AjaxResponse;
+import com.jwebmp.core.base.ajax.AjaxResponseReaction;
+import com.jwebmp.core.base.ajax.AjaxResponseType;
+import com.jwebmp.core.base.ajax.ReactionType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of an AJAX response with a number of reactions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AjaxResponseBenchmark
+{
+    @Param({"1", "10", "100"})
+    private int reactions;
+
+    private AjaxResponse<?> response;
+
+    @Setup
+    public void setup(GuiceContextState context)
+    {
+        response = new AjaxResponse<>();
+        response.setSuccess(true);
+        for (int i = 0; i < reactions; i++)
+        {
+            AjaxResponseReaction<?> reaction = new AjaxResponseReaction<>("Saved " + i, "The row " + i + " was saved", ReactionType.DialogDisplay);
+            reaction.setResponseType(AjaxResponseType.Success);
+            response.addReaction(reaction);
+        }
+    }
+
+    @Benchmark
+    public String toJson()
+    {
+        return response.toJson();
+    }
+}
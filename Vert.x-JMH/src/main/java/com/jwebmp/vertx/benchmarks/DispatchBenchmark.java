@@ -0,0 +1,63 @@
+package com.jwebmp.vertx.benchmarks;
+
+import com.google.inject.Provider;
+import com.guicedee.client.CallScoper;
+import com.guicedee.client.IGuiceContext;
+import com.jwebmp.core.htmlbuilder.javascript.events.interfaces.IEvent;
+import com.jwebmp.vertx.DispatchRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The event lookup of processEvent, from the class name sent by the client to a provisioned event
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings("rawtypes")
+public class DispatchBenchmark
+{
+    private String clientName;
+    private CallScoper scoper;
+
+    @Setup
+    public void setup(GuiceContextState context)
+    {
+        DispatchRegistry<IEvent> events = DispatchRegistry.events();
+        events.resolveAll();
+        String className = events.getClassNames()
+                                 .stream()
+                                 .filter(name -> events.find(name) != null)
+                                 .findFirst()
+                                 .orElseThrow(() -> new IllegalStateException("No event implementations were found by the class scan"));
+        clientName = className.replace('.', '_');
+        scoper = IGuiceContext.get(CallScoper.class);
+    }
+
+    @Benchmark
+    public Provider<? extends IEvent> find()
+    {
+        return DispatchRegistry.events()
+                               .find(clientName);
+    }
+
+    @Benchmark
+    public IEvent findAndProvision()
+    {
+        scoper.enter();
+        try
+        {
+            return DispatchRegistry.events()
+                                   .find(clientName)
+                                   .get();
+        }
+        finally
+        {
+            scoper.exit();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.jwebmp.vertx.benchmarks;
+
+import com.guicedee.client.IGuiceContext;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Boots the injection context once per benchmark run, so the object mapper, the class scan and the call scope are
+ * configured the same way as in the running connector
+ */
+@State(Scope.Benchmark)
+public class GuiceContextState
+{
+    @Setup
+    public void boot()
+    {
+        IGuiceContext.instance()
+                     .inject();
+    }
+}
@@ -0,0 +1,62 @@
+package com.jwebmp.vertx.benchmarks;
+
+import com.jwebmp.core.Page;
+import com.jwebmp.core.base.html.Div;
+import com.jwebmp.core.base.html.Paragraph;
+import com.jwebmp.core.base.interfaces.IComponentStyleBase;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of a page and of its stylesheet, for trees of a number of rows of a few components each
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class PageRenderBenchmark
+{
+    @Param({"10", "100", "1000"})
+    private int rows;
+
+    private Page<?> page;
+
+    @Setup
+    public void setup(GuiceContextState context)
+    {
+        page = new Page<>();
+        Div container = new Div();
+        container.addClass("container");
+        for (int i = 0; i < rows; i++)
+        {
+            Div row = new Div();
+            row.addClass("row");
+            for (int cell = 0; cell < 4; cell++)
+            {
+                Div column = new Div();
+                column.addClass("col");
+                column.add(new Paragraph("Row " + i + " cell " + cell));
+                row.add(column);
+            }
+            container.add(row);
+        }
+        page.getBody()
+            .add(container);
+    }
+
+    @Benchmark
+    public String toStringTiny()
+    {
+        return page.toString(true);
+    }
+
+    @Benchmark
+    public StringBuilder renderCss()
+    {
+        return ((IComponentStyleBase) page.getBody()).renderCss(0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.jwebmp.vertx.benchmarks;
+
+import com.jwebmp.core.generics.FileTemplates;
+import com.jwebmp.vertx.JWebMPVertx;
+import com.jwebmp.vertx.SiteLoaderTemplate;
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of the siteloader script for a request, against replacing the placeholders in the whole script
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SiteLoaderBenchmark
+{
+    private String script;
+    private SiteLoaderTemplate template;
+    private Map<SiteLoaderTemplate.Slot, String> values;
+
+    @Setup
+    public void setup(GuiceContextState context)
+    {
+        script = FileTemplates.getFileTemplate(JWebMPVertx.class, "jwscript", "siteloader")
+                              .toString();
+        template = SiteLoaderTemplate.parse(script, FileTemplates.getTemplateVariables());
+        values = new EnumMap<>(SiteLoaderTemplate.Slot.class);
+        values.put(SiteLoaderTemplate.Slot.SiteAddress, "http://localhost:8080/");
+        values.put(SiteLoaderTemplate.Slot.RootAddress, "http://localhost:8080/");
+        values.put(SiteLoaderTemplate.Slot.PageClass, "com.jwebmp.examples.HomePage");
+        values.put(SiteLoaderTemplate.Slot.UserAgent, "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36");
+        values.put(SiteLoaderTemplate.Slot.RemoteAddress, "127.0.0.1");
+        values.put(SiteLoaderTemplate.Slot.Referer, "http://localhost:8080/home");
+    }
+
+    @Benchmark
+    public Buffer template()
+    {
+        return template.render(values);
+    }
+
+    @Benchmark
+    public Buffer replaceEachPlaceholder()
+    {
+        String rendered = script;
+        for (Map.Entry<SiteLoaderTemplate.Slot, String> entry : values.entrySet())
+        {
+            rendered = rendered.replace(entry.getKey()
+                                             .getPlaceholder(), entry.getValue());
+        }
+        return Buffer.buffer(rendered);
+    }
+}
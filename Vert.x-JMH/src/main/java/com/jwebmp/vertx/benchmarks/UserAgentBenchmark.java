@@ -0,0 +1,51 @@
+package com.jwebmp.vertx.benchmarks;
+
+import com.guicedee.client.IGuiceContext;
+import com.jwebmp.vertx.implementations.UserAgentCache;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgentStringParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User agent parsing, uncached and through the connector's cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserAgentBenchmark
+{
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.1 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:121.0) Gecko/20100101 Firefox/121.0",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.2 Safari/605.1.15"
+    };
+
+    private UserAgentStringParser parser;
+    private UserAgentCache cache;
+    private int next;
+
+    @Setup
+    public void setup(GuiceContextState context)
+    {
+        parser = IGuiceContext.get(UserAgentStringParser.class);
+        cache = IGuiceContext.get(UserAgentCache.class);
+    }
+
+    @Benchmark
+    public ReadableUserAgent parse()
+    {
+        return parser.parse(USER_AGENTS[next++ & 3]);
+    }
+
+    @Benchmark
+    public ReadableUserAgent cached()
+    {
+        return cache.parse(USER_AGENTS[next++ & 3]);
+    }
+}
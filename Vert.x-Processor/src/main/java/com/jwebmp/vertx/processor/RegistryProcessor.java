@@ -0,0 +1,278 @@
+package com.jwebmp.vertx.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes the pages, events and data components of a compilation to {@value #REGISTRY}, so the JWebMP Vert.x connector
+ * can build its routes and dispatch registries without scanning the class path.
+ * <p>
+ * Each line of the registry is a kind and a binary class name separated by tabs, pages with their url in between:
+ * <pre>
+ * page	/home	com.example.HomePage
+ * event	com.example.SaveEvent
+ * data	com.example.ChartData
+ * </pre>
+ * With the processor option {@code -Ajwebmp.reflectConfig=true} the GraalVM reflect-config.json and
+ * resource-config.json for those classes and the registry are also written to {@code META-INF/native-image/} followed by
+ * the {@code jwebmp.reflectConfigPath} option (default jwebmp).
+ * <p>
+ * Classes are matched by name, so the processor needs nothing but the compilation's own class path.
+ * <p>
+ * An incremental compilation sees only the classes it recompiles, so the entries of the registry already in the class
+ * output are kept for the classes that were not recompiled and whose class file is still there. The classes that were
+ * recompiled are listed as they are now, so a page or event that is removed or changed is dropped from the registry.
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions({RegistryProcessor.REFLECT_CONFIG_OPTION, RegistryProcessor.REFLECT_CONFIG_PATH_OPTION})
+public class RegistryProcessor extends AbstractProcessor
+{
+    /**
+     * The registry resource
+     */
+    public static final String REGISTRY = "META-INF/jwebmp/registry.idx";
+
+    static final String REFLECT_CONFIG_OPTION = "jwebmp.reflectConfig";
+    static final String REFLECT_CONFIG_PATH_OPTION = "jwebmp.reflectConfigPath";
+
+    private static final String PAGE_CONFIGURATION = "com.jwebmp.core.annotations.PageConfiguration";
+    private static final String EVENT = "com.jwebmp.core.htmlbuilder.javascript.events.interfaces.IEvent";
+    private static final String DATA_COMPONENT = "com.jwebmp.core.base.servlets.interfaces.IDataComponent";
+
+    private final Map<String, String> pages = new TreeMap<>();
+    private final Set<String> events = new TreeSet<>();
+    private final Set<String> dataComponents = new TreeSet<>();
+    private final Set<String> compiled = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror event = erasureOf(elements, types, EVENT);
+        TypeMirror dataComponent = erasureOf(elements, types, DATA_COMPONENT);
+        for (Element element : roundEnv.getRootElements())
+        {
+            collect(element, elements, types, event, dataComponent);
+        }
+        if (roundEnv.processingOver())
+        {
+            write();
+        }
+        return false;
+    }
+
+    private static TypeMirror erasureOf(Elements elements, Types types, String name)
+    {
+        TypeElement type = elements.getTypeElement(name);
+        return type == null ? null : types.erasure(type.asType());
+    }
+
+    private void collect(Element element, Elements elements, Types types, TypeMirror event, TypeMirror dataComponent)
+    {
+        if (!(element instanceof TypeElement type))
+        {
+            return;
+        }
+        for (Element enclosed : type.getEnclosedElements())
+        {
+            collect(enclosed, elements, types, event, dataComponent);
+        }
+        String binaryName = elements.getBinaryName(type)
+                                    .toString();
+        compiled.add(binaryName);
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers()
+                                                       .contains(Modifier.ABSTRACT))
+        {
+            return;
+        }
+        TypeMirror erasure = types.erasure(type.asType());
+        // Nested static pages are skipped, the same as the class path scan
+        if (!type.getModifiers()
+                 .contains(Modifier.STATIC))
+        {
+            String url = pageUrl(elements, type);
+            if (url != null)
+            {
+                pages.put(binaryName, url);
+            }
+        }
+        if (event != null && types.isAssignable(erasure, event))
+        {
+            events.add(binaryName);
+        }
+        if (dataComponent != null && types.isAssignable(erasure, dataComponent))
+        {
+            dataComponents.add(binaryName);
+        }
+    }
+
+    private static String pageUrl(Elements elements, TypeElement type)
+    {
+        for (AnnotationMirror annotation : type.getAnnotationMirrors())
+        {
+            if (!((TypeElement) annotation.getAnnotationType()
+                                          .asElement()).getQualifiedName()
+                                                       .contentEquals(PAGE_CONFIGURATION))
+            {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : elements.getElementValuesWithDefaults(annotation)
+                                                                                                    .entrySet())
+            {
+                if (value.getKey()
+                         .getSimpleName()
+                         .contentEquals("url"))
+                {
+                    String url = String.valueOf(value.getValue()
+                                                     .getValue());
+                    return url.isEmpty() ? "/" : url;
+                }
+            }
+            return "/";
+        }
+        return null;
+    }
+
+    private void write()
+    {
+        boolean existing = mergeExisting();
+        // Nothing found is left without a registry, so the connector keeps scanning the class path
+        if (!existing && pages.isEmpty() && events.isEmpty() && dataComponents.isEmpty())
+        {
+            return;
+        }
+        StringBuilder registry = new StringBuilder("# Generated by the JWebMP registry processor\n");
+        pages.forEach((className, url) -> registry.append("page\t")
+                                                  .append(url)
+                                                  .append('\t')
+                                                  .append(className)
+                                                  .append('\n'));
+        events.forEach(className -> registry.append("event\t")
+                                            .append(className)
+                                            .append('\n'));
+        dataComponents.forEach(className -> registry.append("data\t")
+                                                    .append(className)
+                                                    .append('\n'));
+        writeResource(REGISTRY, registry);
+
+        if (Boolean.parseBoolean(processingEnv.getOptions()
+                                              .getOrDefault(REFLECT_CONFIG_OPTION, "false")))
+        {
+            String path = "META-INF/native-image/" + processingEnv.getOptions()
+                                                                  .getOrDefault(REFLECT_CONFIG_PATH_OPTION, "jwebmp");
+            writeResource(path + "/reflect-config.json", reflectConfig());
+            writeResource(path + "/resource-config.json", "{\n  \"resources\": {\n    \"includes\": [\n      {\"pattern\": \"\\\\Q" + REGISTRY + "\\\\E\"}\n    ]\n  }\n}\n");
+        }
+    }
+
+    /**
+     * Adds the entries of the registry already in the class output for the classes this compilation did not see
+     *
+     * @return True if there was a registry
+     */
+    private boolean mergeExisting()
+    {
+        Filer filer = processingEnv.getFiler();
+        List<String> lines;
+        try
+        {
+            FileObject resource = filer.getResource(StandardLocation.CLASS_OUTPUT, "", REGISTRY);
+            lines = resource.getCharContent(true)
+                            .toString()
+                            .lines()
+                            .toList();
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        for (String line : lines)
+        {
+            String[] fields = line.split("\t");
+            String className = fields[fields.length - 1];
+            if (line.isBlank() || line.startsWith("#") || compiled.contains(className) || !hasClassFile(filer, className))
+            {
+                continue;
+            }
+            switch (fields[0])
+            {
+                case "page" ->
+                {
+                    if (fields.length == 3)
+                    {
+                        pages.putIfAbsent(className, fields[1]);
+                    }
+                }
+                case "event" -> events.add(className);
+                case "data" -> dataComponents.add(className);
+                default ->
+                {
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasClassFile(Filer filer, String className)
+    {
+        try
+        {
+            return filer.getResource(StandardLocation.CLASS_OUTPUT, "", className.replace('.', '/') + ".class")
+                        .getLastModified() > 0;
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            return false;
+        }
+    }
+
+    private CharSequence reflectConfig()
+    {
+        Set<String> classes = new TreeSet<>(pages.keySet());
+        classes.addAll(events);
+        classes.addAll(dataComponents);
+        StringJoiner config = new StringJoiner(",\n", "[\n", "\n]\n");
+        for (String className : classes)
+        {
+            config.add("  {\"name\": \"" + className + "\", \"allDeclaredConstructors\": true, \"allPublicMethods\": true, \"allDeclaredFields\": true}");
+        }
+        return config.toString();
+    }
+
+    private void writeResource(String name, CharSequence content)
+    {
+        try
+        {
+            FileObject resource = processingEnv.getFiler()
+                                               .createResource(StandardLocation.CLASS_OUTPUT, "", name);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8))
+            {
+                writer.append(content);
+            }
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager()
+                         .printMessage(Diagnostic.Kind.ERROR, "Unable to write " + name + " - " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.jwebmp.vertx.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistryProcessorTest
+{
+    private static JavaFileObject source(String className, String code)
+    {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE)
+        {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors)
+            {
+                return code;
+            }
+        };
+    }
+
+    private static boolean compile(Path output, List<String> options, JavaFileObject... sources) throws IOException
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null))
+        {
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, List.of(output));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, List.of(sources));
+            task.setProcessors(List.of(new RegistryProcessor()));
+            return task.call();
+        }
+    }
+
+    private static JavaFileObject[] application()
+    {
+        return new JavaFileObject[]{
+                source("com.jwebmp.core.annotations.PageConfiguration", """
+                        package com.jwebmp.core.annotations;
+                        public @interface PageConfiguration { String url() default "/"; }
+                        """),
+                source("com.jwebmp.core.htmlbuilder.javascript.events.interfaces.IEvent", """
+                        package com.jwebmp.core.htmlbuilder.javascript.events.interfaces;
+                        public interface IEvent<J, E> {}
+                        """),
+                source("com.jwebmp.core.base.servlets.interfaces.IDataComponent", """
+                        package com.jwebmp.core.base.servlets.interfaces;
+                        public interface IDataComponent<J> {}
+                        """),
+                source("app.HomePage", """
+                        package app;
+                        @com.jwebmp.core.annotations.PageConfiguration(url = "/home")
+                        public class HomePage {}
+                        """),
+                source("app.RootPage", """
+                        package app;
+                        @com.jwebmp.core.annotations.PageConfiguration
+                        public class RootPage
+                        {
+                            public static class Save implements com.jwebmp.core.htmlbuilder.javascript.events.interfaces.IEvent<Save, String> {}
+                        }
+                        """),
+                source("app.Events", """
+                        package app;
+                        public abstract class Events implements com.jwebmp.core.htmlbuilder.javascript.events.interfaces.IEvent<Events, String> {}
+                        class Click extends Events {}
+                        class Chart implements com.jwebmp.core.base.servlets.interfaces.IDataComponent<Chart> {}
+                        """)
+        };
+    }
+
+    @Test
+    void writesRegistry(@TempDir Path output) throws IOException
+    {
+        assertTrue(compile(output, List.of(), application()));
+        List<String> lines = Files.readAllLines(output.resolve(RegistryProcessor.REGISTRY));
+        assertEquals(List.of("# Generated by the JWebMP registry processor",
+                "page\t/home\tapp.HomePage",
+                "page\t/\tapp.RootPage",
+                "event\tapp.Click",
+                "event\tapp.RootPage$Save",
+                "data\tapp.Chart"), lines);
+        assertFalse(Files.exists(output.resolve("META-INF/native-image/jwebmp/reflect-config.json")));
+    }
+
+    @Test
+    void writesReflectConfig(@TempDir Path output) throws IOException
+    {
+        assertTrue(compile(output, List.of("-Ajwebmp.reflectConfig=true", "-Ajwebmp.reflectConfigPath=com.example/app"), application()));
+        String config = Files.readString(output.resolve("META-INF/native-image/com.example/app/reflect-config.json"));
+        assertTrue(config.contains("{\"name\": \"app.RootPage$Save\", \"allDeclaredConstructors\": true"), config);
+        assertTrue(Files.readString(output.resolve("META-INF/native-image/com.example/app/resource-config.json"))
+                        .contains("\\\\QMETA-INF/jwebmp/registry.idx\\\\E"));
+    }
+
+    @Test
+    void skipsEmptyRegistry(@TempDir Path output) throws IOException
+    {
+        assertTrue(compile(output, List.of(), source("app.Plain", "package app; public class Plain {}")));
+        assertFalse(Files.exists(output.resolve(RegistryProcessor.REGISTRY)));
+    }
+
+    @Test
+    void keepsEntriesOfClassesNotRecompiled(@TempDir Path output) throws IOException
+    {
+        assertTrue(compile(output, List.of(), application()));
+        assertTrue(compile(output, List.of("-classpath", output.toString()), source("app.AboutPage", """
+                package app;
+                @com.jwebmp.core.annotations.PageConfiguration(url = "/about")
+                public class AboutPage {}
+                """)));
+        List<String> lines = Files.readAllLines(output.resolve(RegistryProcessor.REGISTRY));
+        assertTrue(lines.contains("page\t/about\tapp.AboutPage"), lines.toString());
+        assertTrue(lines.contains("page\t/home\tapp.HomePage"), lines.toString());
+        assertTrue(lines.contains("event\tapp.RootPage$Save"), lines.toString());
+    }
+
+    @Test
+    void dropsEntriesOfRecompiledAndDeletedClasses(@TempDir Path output) throws IOException
+    {
+        assertTrue(compile(output, List.of(), application()));
+        Files.delete(output.resolve("app/Chart.class"));
+        assertTrue(compile(output, List.of("-classpath", output.toString()), source("app.HomePage", """
+                package app;
+                public class HomePage {}
+                """)));
+        List<String> lines = Files.readAllLines(output.resolve(RegistryProcessor.REGISTRY));
+        assertFalse(lines.contains("page\t/home\tapp.HomePage"), lines.toString());
+        assertFalse(lines.contains("data\tapp.Chart"), lines.toString());
+        assertTrue(lines.contains("page\t/\tapp.RootPage"), lines.toString());
+    }
+}
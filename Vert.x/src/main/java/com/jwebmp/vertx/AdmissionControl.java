@@ -0,0 +1,411 @@
+package com.jwebmp.vertx;
+
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.java.Log;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Bounds the blocking work of each route, so an overload is answered with a quick 503 instead of a growing queue.
+ * <p>
+ * Enabled with JW_ADMISSION=true. Each route runs at most its concurrency limit of tasks at once, and holds at most
+ * JW_ADMISSION_QUEUE_SIZE (default 64) more waiting for a slot, for up to JW_ADMISSION_QUEUE_TIMEOUT_MS (default 2000).
+ * Anything beyond that, or waiting longer, is answered 503 with a Retry-After of JW_ADMISSION_RETRY_AFTER seconds
+ * (default 1). A session runs at most JW_ADMISSION_SESSION_LIMIT tasks at once over all routes (default 8, 0 for no
+ * cap). Requests without a session are only capped by their client address when JW_ADMISSION_ADDRESS_LIMIT=true, as
+ * clients behind one proxy or NAT share an address; behind a proxy, let the router trust the forwarded headers with
+ * {@code Router.allowForward} so the address is that of the client.
+ * <p>
+ * Limits start at JW_ADMISSION_LIMIT (default 20), or JW_ADMISSION_LIMIT_PAGE, _DATA, _CSS or _SCRIPT for one kind of
+ * route. Unless JW_ADMISSION_ADAPTIVE=false the limit then follows the observed task latency like a gradient limiter,
+ * staying between JW_ADMISSION_MIN_LIMIT (default 4) and JW_ADMISSION_MAX_LIMIT (default 200): while recent latency
+ * stays near the long term average the limit grows, and as it rises above it the limit shrinks.
+ */
+@Log
+@Singleton
+public class AdmissionControl
+{
+    private static final boolean ENABLED = Boolean.parseBoolean(Environment.getProperty("JW_ADMISSION", "false"));
+    private static final int LIMIT = Integer.parseInt(Environment.getProperty("JW_ADMISSION_LIMIT", "20"));
+    private static final int MIN_LIMIT = Integer.parseInt(Environment.getProperty("JW_ADMISSION_MIN_LIMIT", "4"));
+    private static final int MAX_LIMIT = Integer.parseInt(Environment.getProperty("JW_ADMISSION_MAX_LIMIT", "200"));
+    private static final boolean ADAPTIVE = Boolean.parseBoolean(Environment.getProperty("JW_ADMISSION_ADAPTIVE", "true"));
+    private static final int QUEUE_SIZE = Integer.parseInt(Environment.getProperty("JW_ADMISSION_QUEUE_SIZE", "64"));
+    private static final long QUEUE_TIMEOUT_MS = Long.parseLong(Environment.getProperty("JW_ADMISSION_QUEUE_TIMEOUT_MS", "2000"));
+    private static final int SESSION_LIMIT = Integer.parseInt(Environment.getProperty("JW_ADMISSION_SESSION_LIMIT", "8"));
+    private static final boolean ADDRESS_LIMIT = Boolean.parseBoolean(Environment.getProperty("JW_ADMISSION_ADDRESS_LIMIT", "false"));
+    private static final String RETRY_AFTER = Environment.getProperty("JW_ADMISSION_RETRY_AFTER", "1");
+
+    @Inject
+    private Vertx vertx;
+
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> sessions = new ConcurrentHashMap<>();
+    private final LongAdder sessionRejections = new LongAdder();
+
+    /**
+     * The concurrency limit and wait queue of one route
+     */
+    public static final class Limiter
+    {
+        private static final int SHORT_WINDOW = 10;
+        private static final int LONG_WINDOW = 500;
+        private static final double TOLERANCE = 1.5;
+        private static final double SMOOTHING = 0.2;
+
+        private final int minLimit;
+        private final int maxLimit;
+        private final int queueSize;
+        private final boolean adaptive;
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+        private double limit;
+        private int inFlight;
+        private double shortRtt;
+        private double longRtt;
+
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+
+        Limiter(int limit, int minLimit, int maxLimit, int queueSize, boolean adaptive)
+        {
+            this.minLimit = minLimit;
+            this.maxLimit = Math.max(minLimit, maxLimit);
+            this.limit = Math.max(minLimit, Math.min(this.maxLimit, limit));
+            this.queueSize = queueSize;
+            this.adaptive = adaptive;
+        }
+
+        /**
+         * Starts a task now, queues it or turns it away
+         *
+         * @return True if the task may start now, false if it was queued, null if it was rejected
+         */
+        synchronized Boolean offer(Waiter waiter)
+        {
+            if (inFlight < (int) limit)
+            {
+                inFlight++;
+                admitted.increment();
+                return true;
+            }
+            if (queue.size() < queueSize)
+            {
+                queue.addLast(waiter);
+                return false;
+            }
+            rejected.increment();
+            return null;
+        }
+
+        /**
+         * Ends a task, adjusts the limit by its latency and takes the queued tasks that may start now
+         *
+         * @param rttNanos How long the task ran, or -1 to leave the limit as it is
+         * @return The queued tasks to start
+         */
+        synchronized List<Waiter> release(long rttNanos)
+        {
+            if (rttNanos >= 0 && adaptive)
+            {
+                adjust(rttNanos);
+            }
+            inFlight--;
+            List<Waiter> next = null;
+            while (inFlight < (int) limit && !queue.isEmpty())
+            {
+                if (next == null)
+                {
+                    next = new ArrayList<>(2);
+                }
+                next.add(queue.pollFirst());
+                inFlight++;
+                admitted.increment();
+            }
+            return next == null ? List.of() : next;
+        }
+
+        private void adjust(long rttNanos)
+        {
+            if (longRtt == 0)
+            {
+                shortRtt = longRtt = rttNanos;
+                return;
+            }
+            shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+            longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+            // Let the baseline follow a lasting drop in latency instead of waiting out the long window
+            if (longRtt / shortRtt > 2)
+            {
+                longRtt *= 0.95;
+            }
+            // Not enough load to tell whether a higher limit would help
+            if (inFlight < limit / 2)
+            {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+            double target = limit * gradient + Math.sqrt(limit);
+            double smoothed = limit * (1 - SMOOTHING) + target * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+        }
+
+        /**
+         * Removes a task that is still waiting
+         *
+         * @return True if the task was waiting, false if it already started or was turned away
+         */
+        synchronized boolean remove(Waiter waiter)
+        {
+            return queue.remove(waiter);
+        }
+
+        public synchronized int getLimit()
+        {
+            return (int) limit;
+        }
+
+        public synchronized int getInFlight()
+        {
+            return inFlight;
+        }
+
+        public synchronized int getQueued()
+        {
+            return queue.size();
+        }
+
+        public long getAdmittedCount()
+        {
+            return admitted.sum();
+        }
+
+        public long getRejectedCount()
+        {
+            return rejected.sum();
+        }
+
+        public long getTimedOutCount()
+        {
+            return timedOut.sum();
+        }
+    }
+
+    /**
+     * A task waiting for, or holding, a slot of a route
+     */
+    static final class Waiter
+    {
+        private final RoutingContext routingContext;
+        private final Supplier<Future<?>> work;
+        private final String session;
+        private final Context context;
+        private long timer = -1;
+
+        Waiter(RoutingContext routingContext, Supplier<Future<?>> work, String session, Context context)
+        {
+            this.routingContext = routingContext;
+            this.work = work;
+            this.session = session;
+            this.context = context;
+        }
+    }
+
+    /**
+     * @return If admission control is on
+     */
+    public boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+    /**
+     * Runs blocking work for a request once the route and session have room for it, or answers 503
+     *
+     * @param routingContext The request
+     * @param stage          The kind of route, page, data, css or script
+     * @param name           The route within the stage, or null if the stage shares one limit
+     * @param work           Starts the work, completing the returned future when it finishes
+     */
+    public void admit(RoutingContext routingContext, String stage, String name, Supplier<Future<?>> work)
+    {
+        if (!ENABLED)
+        {
+            work.get();
+            return;
+        }
+        String session = SESSION_LIMIT > 0 ? sessionOf(routingContext) : null;
+        if (session != null && !acquireSession(session))
+        {
+            sessionRejections.increment();
+            reject(routingContext);
+            return;
+        }
+        Limiter limiter = limiterOf(stage, name);
+        Waiter waiter = new Waiter(routingContext, work, session, vertx.getOrCreateContext());
+        Boolean admitted = limiter.offer(waiter);
+        if (admitted == null)
+        {
+            releaseSession(session);
+            reject(routingContext);
+        }
+        else if (admitted)
+        {
+            start(limiter, waiter);
+        }
+        else
+        {
+            waiter.timer = vertx.setTimer(QUEUE_TIMEOUT_MS, id -> {
+                if (limiter.remove(waiter))
+                {
+                    limiter.timedOut.increment();
+                    releaseSession(session);
+                    reject(routingContext);
+                }
+            });
+            // A client that gives up while waiting frees its place in the queue
+            routingContext.addEndHandler(result -> {
+                if (limiter.remove(waiter))
+                {
+                    vertx.cancelTimer(waiter.timer);
+                    releaseSession(session);
+                }
+            });
+        }
+    }
+
+    private void start(Limiter limiter, Waiter waiter)
+    {
+        if (waiter.timer >= 0)
+        {
+            vertx.cancelTimer(waiter.timer);
+        }
+        HttpServerResponse response = waiter.routingContext.response();
+        if (response.closed() || response.ended())
+        {
+            // The client left between leaving the queue and starting, so the slot goes straight to the next task
+            finish(limiter, waiter, -1);
+            return;
+        }
+        long started = System.nanoTime();
+        Future<?> running;
+        try
+        {
+            running = waiter.work.get();
+        }
+        catch (Throwable e)
+        {
+            log.log(Level.SEVERE, "Unable to start admitted work", e);
+            running = Future.failedFuture(e);
+        }
+        running.onComplete(result -> finish(limiter, waiter, result.succeeded() ? System.nanoTime() - started : -1));
+    }
+
+    private void finish(Limiter limiter, Waiter waiter, long rttNanos)
+    {
+        releaseSession(waiter.session);
+        for (Waiter next : limiter.release(rttNanos))
+        {
+            next.context.runOnContext(v -> start(limiter, next));
+        }
+    }
+
+    private Limiter limiterOf(String stage, String name)
+    {
+        String route = name == null ? stage : stage + " " + name;
+        Limiter limiter = limiters.get(route);
+        if (limiter != null)
+        {
+            return limiter;
+        }
+        return limiters.computeIfAbsent(route, key -> new Limiter(limitOf(stage), MIN_LIMIT, MAX_LIMIT, QUEUE_SIZE, ADAPTIVE));
+    }
+
+    private static int limitOf(String stage)
+    {
+        String limit = Environment.getProperty("JW_ADMISSION_LIMIT_" + stage.toUpperCase(Locale.ROOT), null);
+        return Strings.isNullOrEmpty(limit) ? LIMIT : Integer.parseInt(limit);
+    }
+
+    private static String sessionOf(RoutingContext routingContext)
+    {
+        if (routingContext.session() != null)
+        {
+            return routingContext.session()
+                                 .id();
+        }
+        if (!ADDRESS_LIMIT || routingContext.request()
+                                            .remoteAddress() == null)
+        {
+            return null;
+        }
+        return routingContext.request()
+                             .remoteAddress()
+                             .host();
+    }
+
+    private boolean acquireSession(String session)
+    {
+        boolean[] acquired = new boolean[1];
+        sessions.compute(session, (key, count) -> {
+            AtomicInteger updated = count == null ? new AtomicInteger() : count;
+            acquired[0] = updated.get() < SESSION_LIMIT;
+            if (acquired[0])
+            {
+                updated.incrementAndGet();
+            }
+            return updated.get() == 0 ? null : updated;
+        });
+        return acquired[0];
+    }
+
+    private void releaseSession(String session)
+    {
+        if (session != null)
+        {
+            sessions.computeIfPresent(session, (key, count) -> count.decrementAndGet() <= 0 ? null : count);
+        }
+    }
+
+    private static void reject(RoutingContext routingContext)
+    {
+        HttpServerResponse response = routingContext.response();
+        if (response.ended() || response.closed())
+        {
+            return;
+        }
+        response.setStatusCode(503)
+                .putHeader("Retry-After", RETRY_AFTER)
+                .end();
+    }
+
+    /**
+     * @return The limiter of every route that has been requested, by route
+     */
+    public Map<String, Limiter> getLimiters()
+    {
+        return new TreeMap<>(limiters);
+    }
+
+    /**
+     * @return The number of requests turned away because their session was at its cap
+     */
+    public long getSessionRejectedCount()
+    {
+        return sessionRejections.sum();
+    }
+}
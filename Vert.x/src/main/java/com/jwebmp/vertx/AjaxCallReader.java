@@ -0,0 +1,239 @@
+package com.jwebmp.vertx;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.guicedee.client.Environment;
+import com.jwebmp.core.base.ajax.AjaxCall;
+import com.jwebmp.core.exceptions.InvalidRequestException;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.jackson.DatabindCodec;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import static io.vertx.core.http.HttpHeaders.CONTENT_LENGTH;
+
+/**
+ * Reads AJAX request bodies.
+ * <p>
+ * The body is collected up to JW_AJAX_MAX_BODY_SIZE bytes (default 2 MiB) and rejected with a 413 as soon as it is
+ * known to be larger. The call is then decoded straight from the buffer bytes into the call scoped {@link AjaxCall}
+ * with a reader built once from the configured object mapper, without an intermediate string or a second call graph.
+ * Batches are split into their calls first, each call is decoded the same way when it is fired.
+ */
+@Log
+final class AjaxCallReader
+{
+    static final long MAX_BODY_SIZE = Long.parseLong(Environment.getProperty("JW_AJAX_MAX_BODY_SIZE", "2097152"));
+    static final int MAX_BATCH_SIZE = Integer.parseInt(Environment.getProperty("JW_AJAX_MAX_BATCH_SIZE", "32"));
+
+    private final ObjectReader reader;
+    private final ObjectReader treeReader;
+
+    AjaxCallReader()
+    {
+        reader = DatabindCodec.mapper()
+                              .readerFor(AjaxCall.class);
+        treeReader = DatabindCodec.mapper()
+                                  .reader();
+    }
+
+    /**
+     * Collects the request body, answering with a 413 instead if it exceeds the maximum size
+     *
+     * @param routingContext The routing context
+     * @param bodyHandler    Receives the complete body
+     */
+    void readBody(RoutingContext routingContext, Handler<Buffer> bodyHandler)
+    {
+        HttpServerRequest request = routingContext.request();
+        String contentLength = request.getHeader(CONTENT_LENGTH);
+        if (contentLength != null)
+        {
+            try
+            {
+                if (Long.parseLong(contentLength) > MAX_BODY_SIZE)
+                {
+                    reject(routingContext);
+                    return;
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                routingContext.response()
+                              .setStatusCode(400)
+                              .end();
+                return;
+            }
+        }
+        BodyCollector collector = new BodyCollector();
+        request.handler(chunk -> {
+            if (collector.rejected)
+            {
+                return;
+            }
+            if ((long) collector.body.length() + chunk.length() > MAX_BODY_SIZE)
+            {
+                collector.rejected = true;
+                reject(routingContext);
+                return;
+            }
+            collector.body.appendBuffer(chunk);
+        });
+        request.endHandler(v -> {
+            if (!collector.rejected)
+            {
+                bodyHandler.handle(collector.body);
+            }
+        });
+    }
+
+    private void reject(RoutingContext routingContext)
+    {
+        log.log(Level.WARNING, "Rejected an AJAX body larger than " + MAX_BODY_SIZE + " bytes from " + routingContext.request()
+                                                                                                               .remoteAddress());
+        routingContext.response()
+                      .setStatusCode(413)
+                      .putHeader("Connection", "close")
+                      .end();
+    }
+
+    /**
+     * Decodes a call into an existing instance
+     *
+     * @param body   The request body
+     * @param target The call scoped call to populate
+     * @return The populated call
+     * @throws InvalidRequestException If the body is not a valid call
+     */
+    AjaxCall<?> read(Buffer body, AjaxCall<?> target) throws InvalidRequestException
+    {
+        try
+        {
+            return reader.withValueToUpdate(target)
+                         .readValue(new BufferInputStream(body));
+        }
+        catch (IOException e)
+        {
+            log.log(Level.FINER, "Unable to read the AJAX call", e);
+            throw new InvalidRequestException("The request could not be read - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Splits a batch body into its calls, without decoding them.
+     * <p>
+     * The body is either an array of calls or an object with the array in a {@code calls} field.
+     *
+     * @param body The request body
+     * @return The undecoded calls, in the order they were sent
+     * @throws InvalidRequestException If the body is not a batch, or holds more than JW_AJAX_MAX_BATCH_SIZE calls
+     */
+    List<JsonNode> readBatch(Buffer body) throws InvalidRequestException
+    {
+        JsonNode envelope;
+        try
+        {
+            envelope = treeReader.readTree(new BufferInputStream(body));
+        }
+        catch (IOException e)
+        {
+            log.log(Level.FINER, "Unable to read the AJAX batch", e);
+            throw new InvalidRequestException("The batch could not be read - " + e.getMessage());
+        }
+        if (envelope != null && envelope.isObject())
+        {
+            envelope = envelope.get("calls");
+        }
+        if (envelope == null || !envelope.isArray())
+        {
+            throw new InvalidRequestException("A batch must be an array of calls");
+        }
+        if (envelope.size() > MAX_BATCH_SIZE)
+        {
+            throw new InvalidRequestException("A batch may hold at most " + MAX_BATCH_SIZE + " calls");
+        }
+        List<JsonNode> calls = new ArrayList<>(envelope.size());
+        envelope.forEach(calls::add);
+        return calls;
+    }
+
+    /**
+     * Decodes a call of a batch into an existing instance
+     *
+     * @param call   The call as read from the batch
+     * @param target The call scoped call to populate
+     * @return The populated call
+     * @throws InvalidRequestException If the node is not a valid call
+     */
+    AjaxCall<?> read(JsonNode call, AjaxCall<?> target) throws InvalidRequestException
+    {
+        try
+        {
+            return reader.withValueToUpdate(target)
+                         .readValue(call);
+        }
+        catch (IOException e)
+        {
+            log.log(Level.FINER, "Unable to read the AJAX call", e);
+            throw new InvalidRequestException("The request could not be read - " + e.getMessage());
+        }
+    }
+
+    private static final class BodyCollector
+    {
+        private final Buffer body = Buffer.buffer();
+        private boolean rejected;
+    }
+
+    /**
+     * An input stream reading directly from a buffer
+     */
+    private static final class BufferInputStream extends InputStream
+    {
+        private final Buffer buffer;
+        private int position;
+
+        private BufferInputStream(Buffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            if (position >= buffer.length())
+            {
+                return -1;
+            }
+            return buffer.getByte(position++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            int remaining = buffer.length() - position;
+            if (remaining <= 0)
+            {
+                return len == 0 ? 0 : -1;
+            }
+            int count = Math.min(len, remaining);
+            buffer.getBytes(position, position + count, b, off);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.length() - position;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.jwebmp.vertx;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.guicedee.client.CallScoper;
+import com.guicedee.client.Environment;
+import com.jwebmp.core.base.ajax.*;
+import com.jwebmp.core.exceptions.InvalidRequestException;
+import com.jwebmp.core.htmlbuilder.javascript.events.interfaces.IEvent;
+import com.jwebmp.interception.services.AjaxCallIntercepter;
+import io.smallrye.mutiny.TimeoutException;
+import io.smallrye.mutiny.Uni;
+import lombok.extern.java.Log;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static com.jwebmp.interception.services.JWebMPInterceptionBinder.AjaxCallInterceptorKey;
+
+/**
+ * Runs AJAX calls through the event pipeline, whichever transport they arrived on.
+ * <p>
+ * Each call runs in its own call scope: the call is populated, its event resolved, the AJAX interceptors run and the
+ * event fired. Failures never propagate, they are rendered as an error response instead.
+ * <p>
+ * An event whose interceptors and firing do not finish within its {@link EventTimeout}, or JW_AJAX_EVENT_TIMEOUT_MS
+ * (default 10000, 0 for no limit) without one, is cancelled and answered with an error. The interceptors run on the
+ * calling thread and can not be stopped part way, so their time counts against the timeout and an event whose
+ * interceptors used all of it is not fired. Cancelling the returned {@link Uni} cancels the event chain the same way,
+ * and either way the call scope is exited.
+ */
+@Log
+@Singleton
+public class AjaxEventPipeline
+{
+    /**
+     * Populates the call scoped {@link AjaxCall} from the transport of a request
+     */
+    @FunctionalInterface
+    public interface AjaxCallSource
+    {
+        AjaxCall<?> populate(AjaxCall<?> target) throws InvalidRequestException;
+    }
+
+    private static final long DEFAULT_TIMEOUT_MS = Long.parseLong(Environment.getProperty("JW_AJAX_EVENT_TIMEOUT_MS", "10000"));
+
+    @Inject
+    private RouteMetrics metrics;
+
+    @Inject
+    private Injector injector;
+
+    @Inject
+    private Provider<CallScoper> callScoper;
+
+    @Inject
+    @SuppressWarnings("rawtypes")
+    private Provider<AjaxCall> ajaxCallProvider;
+
+    @Inject
+    @SuppressWarnings("rawtypes")
+    private Provider<AjaxResponse> ajaxResponseProvider;
+
+    private final Map<Class<?>, Duration> timeouts = new ConcurrentHashMap<>();
+
+    private volatile InterceptorChain<AjaxCallIntercepter<?>> interceptors;
+
+    /**
+     * Orders the AJAX interceptors once, inside a scope in case an interceptor is call scoped. The interceptors
+     * themselves are provided by their class for every call.
+     */
+    public void configure()
+    {
+        CallScoper scoper = callScoper.get();
+        scoper.enter();
+        try
+        {
+            configureInScope();
+        }
+        finally
+        {
+            scoper.exit();
+        }
+    }
+
+    private void configureInScope()
+    {
+        InterceptorChain<AjaxCallIntercepter<?>> chain = InterceptorChain.of("ajax", injector.getInstance(AjaxCallInterceptorKey),
+                type -> injector.getProvider(type)::get, (interceptor, call, response) -> interceptor.intercept(call, response));
+        metrics.addInterceptorChain(chain);
+        interceptors = chain;
+    }
+
+    /**
+     * Runs one AJAX call in its own call scope. The scope is exited once the chain terminates.
+     *
+     * @param requestId  Identifies the request in the logs
+     * @param scopeSetup Fills the call scope properties of the transport, run once the scope is entered
+     * @param source     Populates the scoped call
+     * @return The JSON of the response
+     */
+    public Uni<String> fire(String requestId, Runnable scopeSetup, AjaxCallSource source)
+    {
+        CallScoper scoper = callScoper.get();
+        scoper.enter();
+        return fire(requestId, scopeSetup, source, scoper::exit);
+    }
+
+    /**
+     * Runs one AJAX call in the call scope that is already active, such as the scope of a websocket message, so the
+     * call sees and keeps the properties of that scope. The caller owns the scope and exits it.
+     *
+     * @param requestId  Identifies the request in the logs
+     * @param scopeSetup Fills the call scope properties of the transport
+     * @param source     Populates the scoped call
+     * @return The JSON of the response
+     */
+    public Uni<String> fireInScope(String requestId, Runnable scopeSetup, AjaxCallSource source)
+    {
+        return fire(requestId, scopeSetup, source, () -> {
+        });
+    }
+
+    private Uni<String> fire(String requestId, Runnable scopeSetup, AjaxCallSource source, Runnable release)
+    {
+        AjaxResponse<?> ajaxResponse;
+        Uni<?> eventChain;
+        try
+        {
+            InterceptorChain<AjaxCallIntercepter<?>> chain = interceptors;
+            if (chain == null)
+            {
+                // A scope is active here, entering another one would end it early
+                configureInScope();
+                chain = interceptors;
+            }
+            scopeSetup.run();
+            // Deserialize inbound call directly into the scoped instance
+            AjaxCall<?> ajaxCall = source.populate(ajaxCallProvider.get());
+            ajaxCall.setPageCall(true);
+
+            // Prepare response holder and event
+            ajaxResponse = ajaxResponseProvider.get();
+            IEvent<?, ?> triggerEvent = processEvent();
+
+            // Interceptors run first, in order, then the event fires
+            RouteMetrics.Sample fire = metrics.start("event", triggerEvent.getClass()
+                                                                          .getName());
+            // The interceptors run here, on the calling thread, so their time is taken from the event's timeout
+            long started = System.nanoTime();
+            Uni<?> fired = chain.intercept(ajaxCall, ajaxResponse)
+                                .chain(() -> triggerEvent.fireEvent(ajaxCall, ajaxResponse));
+            Duration timeout = getTimeout(triggerEvent.getClass());
+            if (!timeout.isZero())
+            {
+                Duration remaining = timeout.minusNanos(System.nanoTime() - started);
+                if (remaining.isNegative() || remaining.isZero())
+                {
+                    // The interceptors used the whole timeout, the event is not fired
+                    fired = Uni.createFrom()
+                               .failure(new TimeoutException());
+                }
+                else
+                {
+                    // Failing on timeout cancels the chain, so the event stops instead of running on unanswered
+                    fired = fired.ifNoItem()
+                                 .after(remaining)
+                                 .fail();
+                }
+            }
+            eventChain = fired.onTermination()
+                              .invoke((item, failure, cancelled) -> {
+                                  if (failure instanceof TimeoutException)
+                                  {
+                                      fire.timedOut();
+                                  }
+                                  else if (cancelled)
+                                  {
+                                      fire.cancelled();
+                                  }
+                                  else
+                                  {
+                                      fire.stop(failure != null);
+                                  }
+                              });
+        }
+        catch (Throwable T)
+        {
+            // Synchronous failure before we could subscribe (e.g., JSON mapping of the envelope)
+            try
+            {
+                logFailure(requestId, T);
+                return Uni.createFrom()
+                          .item(errorResponse(T).toJson());
+            }
+            finally
+            {
+                release.run();
+            }
+        }
+        AjaxResponse<?> response = ajaxResponse;
+        return eventChain.map(unused -> {
+                             RouteMetrics.Sample toJson = metrics.start("toJson", response.getClass()
+                                                                                          .getName());
+                             try
+                             {
+                                 String json = response.toJson();
+                                 toJson.stop(false);
+                                 return json;
+                             }
+                             catch (RuntimeException e)
+                             {
+                                 toJson.stop(true);
+                                 throw e;
+                             }
+                         })
+                         .onFailure()
+                         .recoverWithItem(failure -> {
+                             logFailure(requestId, failure);
+                             return errorResponse(failure).toJson();
+                         })
+                         .onTermination()
+                         .invoke(release);
+    }
+
+    /**
+     * Returns how long an event may run, reading its {@link EventTimeout} annotation on first use
+     *
+     * @param eventClass The event class
+     * @return The timeout, zero if the event may run as long as it takes
+     */
+    public Duration getTimeout(Class<?> eventClass)
+    {
+        return timeouts.computeIfAbsent(eventClass, key -> {
+            EventTimeout eventTimeout = key.getAnnotation(EventTimeout.class);
+            long nanos = eventTimeout == null ? TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MS) : eventTimeout.unit().toNanos(eventTimeout.value());
+            return nanos <= 0 ? Duration.ZERO : Duration.ofNanos(nanos);
+        });
+    }
+
+    /**
+     * Sets or replaces the timeout of an event, overriding any annotation
+     *
+     * @param eventClass The event class
+     * @param timeout    The timeout, zero or null for no limit
+     */
+    public void setTimeout(Class<?> eventClass, Duration timeout)
+    {
+        timeouts.put(eventClass, timeout == null || timeout.isNegative() ? Duration.ZERO : timeout);
+    }
+
+    /**
+     * Finds the event named by the call in scope
+     *
+     * @return The event to fire
+     * @throws InvalidRequestException If the call does not name a registered event
+     */
+    protected IEvent<?, ?> processEvent() throws InvalidRequestException
+    {
+        return processEvent(ajaxCallProvider.get()
+                                            .getClassName());
+    }
+
+    /**
+     * Finds and creates an event by the name a client sends
+     *
+     * @param className The event class name, with underscores or dots as separators
+     * @return The event to fire
+     * @throws InvalidRequestException If the name is not a registered event
+     */
+    protected IEvent<?, ?> processEvent(String className) throws InvalidRequestException
+    {
+        @SuppressWarnings("rawtypes")
+        Provider<? extends IEvent> eventProvider = DispatchRegistry.events()
+                                                                   .find(className);
+        if (eventProvider == null)
+        {
+            log.log(Level.FINEST, "Unable to find the event class specified - " + className);
+            throw new InvalidRequestException("The Event To Be Triggered Could Not Be Found");
+        }
+        return (IEvent<?, ?>) eventProvider.get();
+    }
+
+    private void logFailure(String requestId, Throwable failure)
+    {
+        if (failure instanceof InvalidRequestException)
+        {
+            log.log(Level.SEVERE, "[SessionID]-[" + requestId + "];[Exception]-[Invalid Request]", failure);
+        }
+        else
+        {
+            log.log(Level.SEVERE, "Unknown in ajax reply\n", failure);
+        }
+    }
+
+    /**
+     * Builds the response shown to the user when an AJAX call fails
+     *
+     * @param failure The failure
+     * @return A response with a danger dialog reaction
+     */
+    public AjaxResponse<?> errorResponse(Throwable failure)
+    {
+        AjaxResponse<?> err = new AjaxResponse<>();
+        err.setSuccess(false);
+        AjaxResponseReaction<?> arr;
+        if (failure instanceof InvalidRequestException ie)
+        {
+            arr = new AjaxResponseReaction<>(
+                    "Invalid Request Value",
+                    "A value in the request was found to be incorrect.<br>" + ie.getMessage(),
+                    ReactionType.DialogDisplay
+            );
+        }
+        else
+        {
+            arr = new AjaxResponseReaction<>(
+                    "Unknown Error",
+                    "An AJAX call resulted in an unknown server error<br>" + failure.getMessage() +
+                            "<br>" + ExceptionUtils.getStackTrace(failure),
+                    ReactionType.DialogDisplay
+            );
+        }
+        arr.setResponseType(AjaxResponseType.Danger);
+        err.addReaction(arr);
+        return err;
+    }
+
+    /**
+     * @return The AJAX interceptor chain, once configured
+     */
+    public InterceptorChain<AjaxCallIntercepter<?>> getInterceptors()
+    {
+        return interceptors;
+    }
+}
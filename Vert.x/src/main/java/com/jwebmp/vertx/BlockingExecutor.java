@@ -0,0 +1,166 @@
+package com.jwebmp.vertx;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import lombok.extern.java.Log;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the blocking parts of the JWebMP handlers.
+ * <p>
+ * The strategy is chosen with the JW_EXECUTION_MODE property:
+ * <ul>
+ *     <li>WorkerPool (default) - the shared Vert.x worker pool</li>
+ *     <li>VirtualThreads - a new virtual thread per task</li>
+ *     <li>NamedPool - a dedicated worker pool named by JW_EXECUTION_POOL_NAME, sized by JW_EXECUTION_POOL_SIZE</li>
+ * </ul>
+ * Tasks enter and exit their own call scope on the thread they run on, so scoping is the same in every mode.
+ * The time each task waits before it starts is recorded per mode, and the mode can be switched at runtime to compare
+ * them under the same load.
+ */
+@Log
+@Singleton
+public class BlockingExecutor
+{
+    /**
+     * Where blocking work is executed
+     */
+    public enum ExecutionMode
+    {
+        WorkerPool,
+        VirtualThreads,
+        NamedPool
+    }
+
+    private static final String POOL_NAME = Environment.getProperty("JW_EXECUTION_POOL_NAME", "jwebmp-blocking");
+    private static final int POOL_SIZE = Integer.parseInt(Environment.getProperty("JW_EXECUTION_POOL_SIZE", "64"));
+
+    @Inject
+    private Vertx vertx;
+
+    private volatile ExecutionMode mode = ExecutionMode.valueOf(Environment.getProperty("JW_EXECUTION_MODE", ExecutionMode.WorkerPool.name()));
+
+    private volatile WorkerExecutor namedPool;
+    private volatile ExecutorService virtualThreads;
+
+    private final Map<ExecutionMode, LatencyStats> queueDelays = new EnumMap<>(ExecutionMode.class);
+
+    public BlockingExecutor()
+    {
+        for (ExecutionMode executionMode : ExecutionMode.values())
+        {
+            queueDelays.put(executionMode, new LatencyStats());
+        }
+    }
+
+    /**
+     * Runs a blocking task with the current execution mode
+     *
+     * @param task The task
+     * @param <T>  The result type
+     * @return The result of the task, completed when the task finishes
+     */
+    public <T> Future<T> execute(Callable<T> task)
+    {
+        ExecutionMode executionMode = mode;
+        LatencyStats queueDelay = queueDelays.get(executionMode);
+        long submitted = System.nanoTime();
+        Callable<T> timed = () -> {
+            queueDelay.record(System.nanoTime() - submitted);
+            return task.call();
+        };
+        return switch (executionMode)
+        {
+            case WorkerPool -> vertx.executeBlocking(timed);
+            case NamedPool -> getNamedPool().executeBlocking(timed);
+            case VirtualThreads -> executeVirtual(timed);
+        };
+    }
+
+    private <T> Future<T> executeVirtual(Callable<T> task)
+    {
+        Promise<T> promise = Promise.promise();
+        getVirtualThreads().execute(() -> {
+            try
+            {
+                promise.complete(task.call());
+            }
+            catch (Throwable e)
+            {
+                promise.fail(e);
+            }
+        });
+        return promise.future();
+    }
+
+    private WorkerExecutor getNamedPool()
+    {
+        WorkerExecutor executor = namedPool;
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                executor = namedPool;
+                if (executor == null)
+                {
+                    log.config("Creating blocking pool " + POOL_NAME + " with " + POOL_SIZE + " threads");
+                    executor = namedPool = vertx.createSharedWorkerExecutor(POOL_NAME, POOL_SIZE);
+                }
+            }
+        }
+        return executor;
+    }
+
+    private ExecutorService getVirtualThreads()
+    {
+        ExecutorService executor = virtualThreads;
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                executor = virtualThreads;
+                if (executor == null)
+                {
+                    executor = virtualThreads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+                                                                                          .name("jwebmp-virtual-", 0)
+                                                                                          .factory());
+                }
+            }
+        }
+        return executor;
+    }
+
+    public ExecutionMode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Switches the execution mode for tasks submitted from now on
+     *
+     * @param mode The new mode
+     */
+    public void setMode(ExecutionMode mode)
+    {
+        this.mode = mode;
+    }
+
+    /**
+     * @param executionMode The mode
+     * @return The queueing delay recorded for tasks run with the mode
+     */
+    public LatencyStats getQueueDelay(ExecutionMode executionMode)
+    {
+        return queueDelays.get(executionMode);
+    }
+}
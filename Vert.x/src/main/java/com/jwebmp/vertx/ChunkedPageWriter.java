@@ -0,0 +1,98 @@
+package com.jwebmp.vertx;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Streams a page to a response as a series of chunks.
+ * <p>
+ * The document up to and including the rendered head, with its stylesheet and script references, is written as soon
+ * as it is rendered so the browser can start fetching them while the body renders. The body follows in chunks of a
+ * fixed number of characters, each encoded on its own so no full size byte copy of the page is made. When the
+ * response write queue is full writing stops and carries on from the drain handler, so no thread waits on the
+ * client. The response is sent chunked over HTTP/1.1 and as data frames over HTTP/2.
+ */
+final class ChunkedPageWriter
+{
+    static final String DOCUMENT_START = "<!DOCTYPE html>\n<html>\n";
+    static final String DOCUMENT_END = "\n</html>";
+
+    private final HttpServerResponse response;
+    private final int chunkSize;
+    private final Promise<Void> done = Promise.promise();
+
+    private String body;
+    private int position;
+
+    ChunkedPageWriter(HttpServerResponse response, int chunkSize)
+    {
+        this.response = response;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Starts the chunked response and writes the document up to and including the head
+     *
+     * @param contentType The content type of the page
+     * @param head        The rendered head
+     */
+    void writeHead(String contentType, CharSequence head)
+    {
+        if (response.closed())
+        {
+            return;
+        }
+        response.setChunked(true)
+                .putHeader(CONTENT_TYPE, contentType)
+                .write(Buffer.buffer((DOCUMENT_START + head).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes the body in chunks and ends the response, returning straight away
+     *
+     * @param body The rendered body
+     * @return Completes once the response is ended, or fails if the connection closed first
+     */
+    Future<Void> writeBody(String body)
+    {
+        this.body = body + DOCUMENT_END;
+        writeChunks();
+        return done.future();
+    }
+
+    private void writeChunks()
+    {
+        while (position < body.length())
+        {
+            if (response.closed())
+            {
+                done.tryFail("The connection closed while the page was streamed");
+                return;
+            }
+            if (response.writeQueueFull())
+            {
+                response.drainHandler(v -> writeChunks());
+                return;
+            }
+            int end = Math.min(body.length(), position + chunkSize);
+            if (end < body.length() && Character.isHighSurrogate(body.charAt(end - 1)))
+            {
+                end--;
+            }
+            response.write(Buffer.buffer(body.substring(position, end)
+                                             .getBytes(StandardCharsets.UTF_8)));
+            position = end;
+        }
+        if (!response.ended())
+        {
+            response.end();
+        }
+        done.tryComplete();
+    }
+}
@@ -0,0 +1,235 @@
+package com.jwebmp.vertx;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Strings;
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import com.jwebmp.vertx.cache.BoundedCache;
+import com.jwebmp.vertx.cache.RenderedContent;
+import io.vertx.core.json.jackson.DatabindCodec;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Turns the replaced components of an AJAX response into patches against the html the client already has.
+ * <p>
+ * Enabled with JW_AJAX_DIFF=true. Every replaced component is tagged with the version (content hash) of its html, and
+ * the client reports the versions it holds in the {@value #VERSIONS_HEADER} header as {@code id=version} pairs. When
+ * the reported version of a component is still known, its html is replaced by a single splice of the old html:
+ * {@code {"base":version,"start":n,"end":n,"insert":".."}}. The client rebuilds the new html from the splice and
+ * morphs the existing nodes into it, so only the changed nodes are touched.
+ * <p>
+ * Rendered html is kept by version in a bounded cache (JW_AJAX_DIFF_CACHE_SIZE entries, JW_AJAX_DIFF_TTL_MINUTES
+ * minutes). The cache is content addressed and so shared across sessions. A client whose version was evicted gets
+ * the full html again. Components smaller than JW_AJAX_DIFF_MIN_SIZE characters are always sent whole.
+ * <p>
+ * A client that receives a patch against a version it no longer holds, because another response replaced the
+ * component in between, fetches the full html of the new version from {@link JWebMPVertx#AJAX_VERSION_SUFFIX} under
+ * the AJAX location, and reloads the page if that version was evicted.
+ */
+@Log
+@Singleton
+public class ComponentDiffer
+{
+    /**
+     * The request header listing the component versions a client holds
+     */
+    public static final String VERSIONS_HEADER = "X-JW-Versions";
+
+    static final boolean ENABLED = Boolean.parseBoolean(Environment.getProperty("JW_AJAX_DIFF", "false"));
+    private static final int MIN_SIZE = Integer.parseInt(Environment.getProperty("JW_AJAX_DIFF_MIN_SIZE", "512"));
+    private static final int MAX_SIZE = Integer.parseInt(Environment.getProperty("JW_AJAX_DIFF_MAX_SIZE", "1048576"));
+    private static final int MAX_VERSIONS = 256;
+
+    private final BoundedCache<String, String> htmlByVersion = new BoundedCache<>(
+            Integer.parseInt(Environment.getProperty("JW_AJAX_DIFF_CACHE_SIZE", "4096")),
+            Long.parseLong(Environment.getProperty("JW_AJAX_DIFF_TTL_MINUTES", "30")), TimeUnit.MINUTES);
+
+    private final LongAdder patched = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    public boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+    /**
+     * Rewrites the components of a response into patches where the client holds an earlier version
+     *
+     * @param responseJson   The rendered response
+     * @param clientVersions The {@value #VERSIONS_HEADER} value sent by the client, may be null
+     * @return The response to send
+     */
+    public String diff(String responseJson, String clientVersions)
+    {
+        if (!ENABLED || responseJson == null || !responseJson.contains("\"components\""))
+        {
+            return responseJson;
+        }
+        ObjectMapper mapper = DatabindCodec.mapper();
+        JsonNode response;
+        try
+        {
+            response = mapper.readTree(responseJson);
+        }
+        catch (IOException e)
+        {
+            log.log(Level.FINE, "Unable to read a response for diffing", e);
+            return responseJson;
+        }
+        JsonNode components = response.get("components");
+        if (components == null || !components.isArray())
+        {
+            return responseJson;
+        }
+        Map<String, String> versions = parseVersions(clientVersions);
+        boolean changed = false;
+        for (JsonNode component : components)
+        {
+            if (component instanceof ObjectNode node && diffComponent(node, versions))
+            {
+                changed = true;
+            }
+        }
+        return changed ? response.toString() : responseJson;
+    }
+
+    private boolean diffComponent(ObjectNode component, Map<String, String> versions)
+    {
+        JsonNode insertType = component.get("insertType");
+        JsonNode htmlNode = component.get("html");
+        JsonNode idNode = component.get("id");
+        if (idNode == null || htmlNode == null || !htmlNode.isTextual()
+                || insertType == null || !"Replace".equals(insertType.asText()))
+        {
+            return false;
+        }
+        String html = htmlNode.asText();
+        if (html.length() > MAX_SIZE)
+        {
+            return false;
+        }
+        String version = RenderedContent.hash(html.getBytes(StandardCharsets.UTF_8));
+        htmlByVersion.put(version, html);
+        component.put("version", version);
+
+        String base = versions.get(idNode.asText());
+        String previous = base == null || html.length() < MIN_SIZE ? null : htmlByVersion.get(base);
+        if (previous == null)
+        {
+            return true;
+        }
+        Splice splice = Splice.between(previous, html);
+        if (splice.insert()
+                  .length() >= html.length())
+        {
+            return true;
+        }
+        ObjectNode patch = component.putObject("patch");
+        patch.put("base", base);
+        patch.put("start", splice.start());
+        patch.put("end", splice.end());
+        patch.put("insert", splice.insert());
+        component.remove("html");
+        patched.increment();
+        bytesSaved.add(html.length() - splice.insert()
+                                             .length());
+        return true;
+    }
+
+    /**
+     * @param version A version sent to a client
+     * @return The html of the version, or null if it is no longer held
+     */
+    public String getHtml(String version)
+    {
+        return Strings.isNullOrEmpty(version) ? null : htmlByVersion.get(version);
+    }
+
+    /**
+     * Reads {@code id=version} pairs separated by commas
+     *
+     * @param header The header value
+     * @return The versions by component id
+     */
+    static Map<String, String> parseVersions(String header)
+    {
+        Map<String, String> versions = new HashMap<>();
+        if (Strings.isNullOrEmpty(header))
+        {
+            return versions;
+        }
+        for (String pair : header.split(","))
+        {
+            int separator = pair.indexOf('=');
+            if (separator > 0 && versions.size() < MAX_VERSIONS)
+            {
+                versions.put(pair.substring(0, separator)
+                                 .trim(), pair.substring(separator + 1)
+                                              .trim());
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Replacing the characters [start, end) of the old text with insert gives the new text
+     */
+    record Splice(int start, int end, String insert)
+    {
+        static Splice between(String previous, String current)
+        {
+            int limit = Math.min(previous.length(), current.length());
+            int prefix = 0;
+            while (prefix < limit && previous.charAt(prefix) == current.charAt(prefix))
+            {
+                prefix++;
+            }
+            if (prefix > 0 && Character.isHighSurrogate(previous.charAt(prefix - 1)))
+            {
+                prefix--;
+            }
+            int suffix = 0;
+            while (suffix < limit - prefix
+                    && previous.charAt(previous.length() - 1 - suffix) == current.charAt(current.length() - 1 - suffix))
+            {
+                suffix++;
+            }
+            if (suffix > 0 && Character.isLowSurrogate(current.charAt(current.length() - suffix)))
+            {
+                suffix--;
+            }
+            return new Splice(prefix, previous.length() - suffix, current.substring(prefix, current.length() - suffix));
+        }
+    }
+
+    /**
+     * @return The number of components sent as a patch
+     */
+    public long getPatchedCount()
+    {
+        return patched.sum();
+    }
+
+    /**
+     * @return The characters of html not sent because a patch was sent instead
+     */
+    public long getCharactersSaved()
+    {
+        return bytesSaved.sum();
+    }
+
+    public BoundedCache<String, String> getCache()
+    {
+        return htmlByVersion;
+    }
+}
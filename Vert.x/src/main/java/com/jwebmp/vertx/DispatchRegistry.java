@@ -0,0 +1,203 @@
+package com.jwebmp.vertx;
+
+import com.google.common.base.Strings;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.guicedee.client.IGuiceContext;
+import com.jwebmp.core.base.servlets.interfaces.IDataComponent;
+import com.jwebmp.core.htmlbuilder.javascript.events.interfaces.IEvent;
+import io.github.classgraph.ClassInfo;
+import lombok.extern.java.Log;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import static com.guicedee.services.jsonrepresentation.json.StaticStrings.CHAR_DOT;
+import static com.guicedee.services.jsonrepresentation.json.StaticStrings.CHAR_UNDERSCORE;
+
+/**
+ * The classes a client may name in a request, built once from the {@link GeneratedRegistry} when there is one, and from
+ * the class scan otherwise.
+ * <p>
+ * Clients send class names with underscores in place of dots. Names are resolved with a single map lookup to a Guice
+ * provider, and names that are not a concrete implementation of the registry type are rejected without loading any
+ * class.
+ *
+ * @param <T> The dispatch type
+ */
+@Log
+@SuppressWarnings("rawtypes")
+public final class DispatchRegistry<T>
+{
+    private static volatile DispatchRegistry<IEvent> events;
+    private static volatile DispatchRegistry<IDataComponent> dataComponents;
+
+    private final Class<T> type;
+    private final Map<String, String> classNames;
+    private final Map<String, Provider<? extends T>> providers = new ConcurrentHashMap<>();
+    private final Set<String> unresolvable = ConcurrentHashMap.newKeySet();
+
+    DispatchRegistry(Class<T> type, Collection<String> implementations)
+    {
+        this.type = type;
+        Map<String, String> names = new HashMap<>();
+        for (String implementation : implementations)
+        {
+            names.put(implementation, implementation);
+            names.putIfAbsent(implementation.replace('$', '.'), implementation);
+        }
+        this.classNames = Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * @return The registry of every concrete {@link IEvent}
+     */
+    public static DispatchRegistry<IEvent> events()
+    {
+        DispatchRegistry<IEvent> registry = events;
+        if (registry == null)
+        {
+            synchronized (DispatchRegistry.class)
+            {
+                registry = events;
+                if (registry == null)
+                {
+                    GeneratedRegistry generated = GeneratedRegistry.getInstance();
+                    registry = events = build(IEvent.class, generated, generated == null ? null : generated.getEvents());
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * @return The registry of every concrete {@link IDataComponent}
+     */
+    public static DispatchRegistry<IDataComponent> dataComponents()
+    {
+        DispatchRegistry<IDataComponent> registry = dataComponents;
+        if (registry == null)
+        {
+            synchronized (DispatchRegistry.class)
+            {
+                registry = dataComponents;
+                if (registry == null)
+                {
+                    GeneratedRegistry generated = GeneratedRegistry.getInstance();
+                    registry = dataComponents = build(IDataComponent.class, generated, generated == null ? null : generated.getDataComponents());
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Builds a registry from the generated registry alone, or from the scan when there is no registry. With
+     * JW_GENERATED_REGISTRY_SCAN=true the classes the scan finds outside the generated registry are added.
+     *
+     * @param type       The dispatch type
+     * @param generated  The generated registry, or null to take every class from the scan
+     * @param registered The classes of the dispatch type listed by the generated registry
+     */
+    private static <T> DispatchRegistry<T> build(Class<T> type, GeneratedRegistry generated, Set<String> registered)
+    {
+        Set<String> implementations = new LinkedHashSet<>();
+        if (registered != null)
+        {
+            implementations.addAll(registered);
+        }
+        if (generated != null && !GeneratedRegistry.SCAN_UNCOVERED)
+        {
+            log.config("Registered " + implementations.size() + " " + type.getSimpleName() + " implementations for dispatch");
+            return new DispatchRegistry<>(type, implementations);
+        }
+        int scanned = 0;
+        for (ClassInfo classInfo : IGuiceContext.instance()
+                                                .getScanResult()
+                                                .getClassesImplementing(type))
+        {
+            if (classInfo.isAbstract() || classInfo.isInterface() || generated != null && generated.covers(classInfo))
+            {
+                continue;
+            }
+            if (implementations.add(classInfo.getName()))
+            {
+                scanned++;
+            }
+        }
+        if (generated != null && scanned > 0)
+        {
+            log.config("Found " + scanned + " " + type.getSimpleName() + " implementations outside the generated registry");
+        }
+        log.config("Registered " + implementations.size() + " " + type.getSimpleName() + " implementations for dispatch");
+        return new DispatchRegistry<>(type, implementations);
+    }
+
+    /**
+     * Resolves the provider of every registered class, so no lookup on the request path creates a binding
+     */
+    public void resolveAll()
+    {
+        for (String className : new HashSet<>(classNames.values()))
+        {
+            resolve(className);
+        }
+    }
+
+    /**
+     * Finds the provider for a class name sent by a client
+     *
+     * @param clientName The class name, with underscores or dots as separators
+     * @return The provider, or null if the name is not a registered implementation
+     */
+    public Provider<? extends T> find(String clientName)
+    {
+        if (Strings.isNullOrEmpty(clientName))
+        {
+            return null;
+        }
+        String className = classNames.get(clientName);
+        if (className == null)
+        {
+            className = classNames.get(clientName.replace(CHAR_UNDERSCORE, CHAR_DOT));
+            if (className == null)
+            {
+                return null;
+            }
+        }
+        Provider<? extends T> provider = providers.get(className);
+        return provider != null ? provider : resolve(className);
+    }
+
+    /**
+     * @return The binary names of every registered class
+     */
+    public Set<String> getClassNames()
+    {
+        return new TreeSet<>(classNames.values());
+    }
+
+    private Provider<? extends T> resolve(String className)
+    {
+        if (unresolvable.contains(className))
+        {
+            return null;
+        }
+        return providers.computeIfAbsent(className, name -> {
+            try
+            {
+                Class<? extends T> clazz = Class.forName(name, false, DispatchRegistry.class.getClassLoader())
+                                                .asSubclass(type);
+                return IGuiceContext.get(Injector.class)
+                                    .getProvider(clazz);
+            }
+            catch (Throwable e)
+            {
+                log.log(Level.FINE, "Unable to resolve " + type.getSimpleName() + " " + name + " for dispatch", e);
+                unresolvable.add(name);
+                return null;
+            }
+        });
+    }
+}
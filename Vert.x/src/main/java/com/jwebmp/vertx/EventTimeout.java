@@ -0,0 +1,28 @@
+package com.jwebmp.vertx;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sets how long an event may take to run its interceptors and fire before its AJAX call is answered with an error.
+ * <p>
+ * The interceptors run first on the calling thread and can not be stopped part way, so the time they take is counted
+ * against the timeout and the event is not fired at all if they used it up. When the time is up, or the client
+ * disconnects first, the event chain is cancelled and its call scope exited.
+ * Events without the annotation use JW_AJAX_EVENT_TIMEOUT_MS (default 10000).
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface EventTimeout
+{
+    /**
+     * @return How long the event may run, 0 or less for no limit
+     */
+    long value();
+
+    /**
+     * @return The unit of the timeout
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
@@ -0,0 +1,239 @@
+package com.jwebmp.vertx;
+
+import com.guicedee.client.Environment;
+import io.github.classgraph.ClassInfo;
+import lombok.extern.java.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * The pages, events and data components listed at compile time by the jwebmp-vertx-processor annotation processor.
+ * <p>
+ * When any {@value #RESOURCE} is on the class path the page routes and dispatch registries are built from the merged
+ * registries alone, without reading the class scan. Modules built without the processor are only found with
+ * JW_GENERATED_REGISTRY_SCAN=true, which also searches the class scan for the classes of the class path elements that
+ * hold no registry. Set JW_GENERATED_REGISTRY=false to scan regardless.
+ */
+@Log
+public final class GeneratedRegistry
+{
+    /**
+     * The generated registry resource
+     */
+    public static final String RESOURCE = "META-INF/jwebmp/registry.idx";
+
+    private static final boolean ENABLED = Boolean.parseBoolean(Environment.getProperty("JW_GENERATED_REGISTRY", "true"));
+    /**
+     * If the class scan is searched for classes outside the registry when a registry is present
+     */
+    static final boolean SCAN_UNCOVERED = Boolean.parseBoolean(Environment.getProperty("JW_GENERATED_REGISTRY_SCAN", "false"));
+
+    private static volatile Optional<GeneratedRegistry> instance;
+
+    private final Map<String, String> pages = new LinkedHashMap<>();
+    private final Set<String> events = new LinkedHashSet<>();
+    private final Set<String> dataComponents = new LinkedHashSet<>();
+    private final Set<String> locations = new HashSet<>();
+
+    GeneratedRegistry()
+    {
+    }
+
+    /**
+     * @return The merged registry of the class path, or null if there is none or it is disabled
+     */
+    public static GeneratedRegistry getInstance()
+    {
+        Optional<GeneratedRegistry> registry = instance;
+        if (registry == null)
+        {
+            synchronized (GeneratedRegistry.class)
+            {
+                registry = instance;
+                if (registry == null)
+                {
+                    registry = instance = Optional.ofNullable(ENABLED ? load(classLoader()) : null);
+                }
+            }
+        }
+        return registry.orElse(null);
+    }
+
+    private static GeneratedRegistry load(ClassLoader classLoader)
+    {
+        try
+        {
+            Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+            if (!resources.hasMoreElements())
+            {
+                return null;
+            }
+            GeneratedRegistry registry = new GeneratedRegistry();
+            while (resources.hasMoreElements())
+            {
+                URL resource = resources.nextElement();
+                String url = resource.toString();
+                registry.addLocation(url.substring(0, url.length() - RESOURCE.length()));
+                try (Reader reader = new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))
+                {
+                    registry.read(reader);
+                }
+            }
+            log.config("Loaded the generated registry of " + registry.pages.size() + " pages, " + registry.events.size() + " events and "
+                    + registry.dataComponents.size() + " data components");
+            return registry;
+        }
+        catch (IOException e)
+        {
+            log.log(Level.WARNING, "Unable to read the generated registry, scanning instead", e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the entries of one registry file
+     *
+     * @param reader The registry
+     */
+    void read(Reader reader) throws IOException
+    {
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null)
+        {
+            if (line.isBlank() || line.startsWith("#"))
+            {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            switch (fields[0])
+            {
+                case "page" ->
+                {
+                    if (fields.length == 3)
+                    {
+                        pages.putIfAbsent(fields[2], fields[1]);
+                    }
+                }
+                case "event" -> events.add(fields[fields.length - 1]);
+                case "data" -> dataComponents.add(fields[fields.length - 1]);
+                default -> log.fine("Ignoring unknown registry entry " + line);
+            }
+        }
+    }
+
+    /**
+     * Reduces a class path element or a resource root to the location of its jar or directory
+     *
+     * @param uri The uri, such as jar:file:/app.jar!/ or file:/app/classes/
+     * @return The location, such as file:/app.jar or file:/app/classes
+     */
+    static String locationOf(String uri)
+    {
+        String location = uri.startsWith("jar:") ? uri.substring(4) : uri;
+        int separator = location.indexOf("!/");
+        if (separator >= 0)
+        {
+            location = location.substring(0, separator);
+        }
+        while (location.endsWith("/"))
+        {
+            location = location.substring(0, location.length() - 1);
+        }
+        return location;
+    }
+
+    /**
+     * Adds a class path element holding a registry
+     *
+     * @param uri The uri of the element
+     */
+    void addLocation(String uri)
+    {
+        locations.add(locationOf(uri));
+    }
+
+    /**
+     * @param classInfo A scanned class
+     * @return True if the class path element of the class holds a registry, so the registry already lists the class
+     */
+    public boolean covers(ClassInfo classInfo)
+    {
+        try
+        {
+            return covers(classInfo.getClasspathElementURI()
+                                   .toString());
+        }
+        catch (RuntimeException e)
+        {
+            log.log(Level.FINE, "No class path element for " + classInfo.getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * @param uri The uri of a class path element
+     * @return True if the element holds a registry
+     */
+    boolean covers(String uri)
+    {
+        return locations.contains(locationOf(uri));
+    }
+
+    /**
+     * Loads a registered class without initializing it
+     *
+     * @param className The binary class name
+     * @return The class, or null if it is not on the class path
+     */
+    static Class<?> loadClass(String className)
+    {
+        try
+        {
+            return Class.forName(className, false, classLoader());
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            log.log(Level.WARNING, "Registered class " + className + " could not be loaded, ignoring", e);
+            return null;
+        }
+    }
+
+    private static ClassLoader classLoader()
+    {
+        ClassLoader classLoader = Thread.currentThread()
+                                        .getContextClassLoader();
+        return classLoader == null ? GeneratedRegistry.class.getClassLoader() : classLoader;
+    }
+
+    /**
+     * @return The url of each page class, by binary class name
+     */
+    public Map<String, String> getPages()
+    {
+        return Collections.unmodifiableMap(pages);
+    }
+
+    /**
+     * @return The binary name of each event class
+     */
+    public Set<String> getEvents()
+    {
+        return Collections.unmodifiableSet(events);
+    }
+
+    /**
+     * @return The binary name of each data component class
+     */
+    public Set<String> getDataComponents()
+    {
+        return Collections.unmodifiableSet(dataComponents);
+    }
+}
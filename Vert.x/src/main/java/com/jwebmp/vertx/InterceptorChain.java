@@ -0,0 +1,160 @@
+package com.jwebmp.vertx;
+
+import com.guicedee.guicedinjection.interfaces.IDefaultService;
+import com.jwebmp.core.base.ajax.AjaxCall;
+import com.jwebmp.core.base.ajax.AjaxResponse;
+import io.smallrye.mutiny.Uni;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * An interceptor set resolved once at startup into an ordered array.
+ * <p>
+ * Interceptors run in ascending sort order, then by class name. The chain keeps a provider per interceptor class
+ * rather than the instance, so call scoped and stateful interceptors still get the instance of the call, without the
+ * set being resolved and matched again on every call. The time spent in each interceptor is recorded and exported
+ * through {@link RouteMetrics}. Interceptors always run on the calling thread, inside the call scope.
+ *
+ * @param <I> The interceptor type
+ */
+public final class InterceptorChain<I>
+{
+    private static final int DEFAULT_SORT_ORDER = 100;
+
+    /**
+     * Calls a single interceptor
+     *
+     * @param <I> The interceptor type
+     */
+    @FunctionalInterface
+    public interface Invoker<I>
+    {
+        void invoke(I interceptor, AjaxCall<?> call, AjaxResponse<?> response) throws Exception;
+    }
+
+    private final String name;
+    private final Class<?>[] classes;
+    private final Supplier<?>[] providers;
+    private final LatencyStats[] timings;
+    private final Invoker<I> invoker;
+
+    private InterceptorChain(String name, Class<?>[] classes, Supplier<?>[] providers, Invoker<I> invoker)
+    {
+        this.name = name;
+        this.classes = classes;
+        this.providers = providers;
+        this.invoker = invoker;
+        this.timings = new LatencyStats[classes.length];
+        for (int i = 0; i < timings.length; i++)
+        {
+            timings[i] = new LatencyStats();
+        }
+    }
+
+    /**
+     * Builds a chain, ordering the interceptors once. Call from inside a call scope in case an interceptor is call
+     * scoped.
+     *
+     * @param name         The chain name
+     * @param interceptors The interceptors, in any order
+     * @param providers    Gives the provider of an interceptor class, asked once per class
+     * @param invoker      How each interceptor is called
+     * @param <I>          The interceptor type
+     * @return The ordered chain
+     */
+    public static <I> InterceptorChain<I> of(String name, Iterable<?> interceptors, Function<Class<?>, Supplier<?>> providers, Invoker<I> invoker)
+    {
+        List<Object> ordered = new ArrayList<>();
+        for (Object interceptor : interceptors)
+        {
+            ordered.add(interceptor);
+        }
+        ordered.sort(Comparator.comparingInt(InterceptorChain::sortOrder)
+                               .thenComparing(interceptor -> interceptor.getClass()
+                                                                        .getName()));
+        Class<?>[] classes = new Class<?>[ordered.size()];
+        Supplier<?>[] suppliers = new Supplier<?>[ordered.size()];
+        for (int i = 0; i < classes.length; i++)
+        {
+            classes[i] = ordered.get(i)
+                                .getClass();
+            suppliers[i] = providers.apply(classes[i]);
+        }
+        return new InterceptorChain<>(name, classes, suppliers, invoker);
+    }
+
+    private static int sortOrder(Object interceptor)
+    {
+        if (interceptor instanceof IDefaultService<?> service && service.sortOrder() != null)
+        {
+            return service.sortOrder();
+        }
+        return DEFAULT_SORT_ORDER;
+    }
+
+    /**
+     * Runs the interceptors in order on the calling thread
+     *
+     * @param call     The call
+     * @param response The response
+     * @throws Exception Any failure of an interceptor, which stops the chain
+     */
+    @SuppressWarnings("unchecked")
+    public void run(AjaxCall<?> call, AjaxResponse<?> response) throws Exception
+    {
+        for (int i = 0; i < providers.length; i++)
+        {
+            long start = System.nanoTime();
+            try
+            {
+                invoker.invoke((I) providers[i].get(), call, response);
+            }
+            finally
+            {
+                timings[i].record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Runs the chain in order on the calling thread before returning
+     *
+     * @param call     The call
+     * @param response The response
+     * @return Completes once every interceptor has run, or fails with the first failure
+     */
+    public Uni<Void> intercept(AjaxCall<?> call, AjaxResponse<?> response)
+    {
+        try
+        {
+            run(call, response);
+            return Uni.createFrom()
+                      .voidItem();
+        }
+        catch (Exception e)
+        {
+            return Uni.createFrom()
+                      .failure(e);
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return The time spent in each interceptor, by class name, in chain order
+     */
+    public Map<String, LatencyStats> getTimings()
+    {
+        Map<String, LatencyStats> result = new LinkedHashMap<>();
+        for (int i = 0; i < timings.length; i++)
+        {
+            result.put(classes[i].getName(), timings[i]);
+        }
+        return result;
+    }
+}
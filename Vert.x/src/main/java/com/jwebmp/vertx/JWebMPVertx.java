@@ -1,15 +1,13 @@
 package com.jwebmp.vertx;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Strings;
 import com.google.inject.*;
-import com.google.inject.name.Names;
 import com.guicedee.client.CallScopeSource;
 import com.guicedee.client.*;
 import com.guicedee.guicedinjection.interfaces.IGuiceModule;
 import com.guicedee.guicedservlets.servlets.services.scopes.CallScope;
-import com.guicedee.services.jsonrepresentation.IJsonRepresentation;
 import com.guicedee.vertx.web.spi.VertxHttpServerConfigurator;
-import com.jwebmp.core.annotations.PageConfiguration;
 import com.jwebmp.core.base.ajax.*;
 import com.jwebmp.core.base.interfaces.IComponentStyleBase;
 import com.jwebmp.core.base.servlets.interfaces.IDataComponent;
@@ -17,123 +15,305 @@ import com.jwebmp.core.exceptions.InvalidRequestException;
 import com.jwebmp.core.generics.FileTemplates;
 import com.jwebmp.core.htmlbuilder.javascript.events.interfaces.IEvent;
 import com.jwebmp.core.services.IPage;
-import com.jwebmp.interception.services.AjaxCallIntercepter;
 import com.jwebmp.interception.services.DataCallIntercepter;
-import io.github.classgraph.ClassInfo;
-import io.github.classgraph.ScanResult;
+import com.jwebmp.vertx.cache.ContentEncoding;
+import com.jwebmp.vertx.cache.CssCache;
+import com.jwebmp.vertx.cache.RenderedContent;
+import com.jwebmp.vertx.cache.RenderedPageCache;
+import com.jwebmp.vertx.implementations.UserAgentCache;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import lombok.extern.java.Log;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 
-import java.nio.charset.StandardCharsets;
+import java.net.URI;
 import java.text.MessageFormat;
-import java.time.Duration;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 
-import static com.guicedee.client.IGuiceContext.get;
-import static com.guicedee.services.jsonrepresentation.json.StaticStrings.CHAR_DOT;
-import static com.guicedee.services.jsonrepresentation.json.StaticStrings.CHAR_UNDERSCORE;
-import static com.jwebmp.interception.services.JWebMPInterceptionBinder.AjaxCallInterceptorKey;
 import static com.jwebmp.interception.services.JWebMPInterceptionBinder.DataCallInterceptorKey;
 import static com.jwebmp.interception.services.StaticStrings.*;
-import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
+import static io.vertx.core.http.HttpHeaders.CACHE_CONTROL;
+import static io.vertx.core.http.HttpHeaders.ETAG;
+import static io.vertx.core.http.HttpHeaders.IF_NONE_MATCH;
+import static io.vertx.core.http.HttpHeaders.REFERER;
+import static io.vertx.core.http.HttpHeaders.USER_AGENT;
+import static io.vertx.core.http.HttpHeaders.VARY;
 
 @Log
 @Singleton
 public class JWebMPVertx extends AbstractModule implements IGuiceModule<JWebMPVertx>, VertxHttpServerConfigurator
 {
+    private static final String CACHE_CONTROL_REVALIDATE = "no-cache";
+    private static final String CACHE_CONTROL_IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private static final boolean STREAM_PAGES = Boolean.parseBoolean(Environment.getProperty("JW_PAGE_STREAMING", "false"));
+    private static final int STREAM_CHUNK_SIZE = Integer.parseInt(Environment.getProperty("JW_PAGE_STREAMING_CHUNK_SIZE", "16384"));
+
+    /**
+     * Appended to the AJAX location for the endpoint accepting many calls in one request. The site loader routes the
+     * calls the generated event scripts post to the AJAX location through {@code jw.actions.sendEvent}, which sends
+     * them over the websocket when it is open and batches the calls of one frame to this endpoint otherwise, unless
+     * JW_AJAX_ROUTE_EVENTS is false.
+     */
+    public static final String AJAX_BATCH_SUFFIX = "/batch";
+    /**
+     * Appended to the AJAX location for the endpoint returning the full html of a diffed component version
+     */
+    public static final String AJAX_VERSION_SUFFIX = "/version";
+
+    /**
+     * Whether the site loader sends the calls of the generated event scripts through its batch queue and websocket
+     */
+    private static final boolean ROUTE_EVENTS = Boolean.parseBoolean(Environment.getProperty("JW_AJAX_ROUTE_EVENTS", "true"));
+    /**
+     * Where the site loader opens its websocket for event calls, empty to send every call over HTTP
+     */
+    private static final String WEBSOCKET_LOCATION = Environment.getProperty("JW_AJAX_WEBSOCKET_LOCATION", "/wssocket");
+
+    private static final boolean PRELOAD_USER_AGENTS = Boolean.parseBoolean(Environment.getProperty("JW_USER_AGENT_PRELOAD", "false"));
+    private static final boolean LEGACY_SCOPE_PROPERTIES = Boolean.parseBoolean(Environment.getProperty("JW_LEGACY_SCOPE_PROPERTIES", "true"));
+
     @Inject
     private Vertx vertx;
 
+    @Inject
+    private BlockingExecutor blockingExecutor;
+
+    @Inject
+    private RenderedPageCache pageCache;
+
+    @Inject
+    private CssCache cssCache;
+
+    @Inject
+    private ResponseCompression compression;
+
+    @Inject
+    private ResponseWriter responseWriter;
+
+    @Inject
+    private UserAgentCache userAgentCache;
+
+    @Inject
+    private AjaxEventPipeline ajaxPipeline;
+
+    @Inject
+    private ComponentDiffer componentDiffer;
+
+    @Inject
+    private RouteMetrics metrics;
+
+    @Inject
+    private AdmissionControl admission;
+
+    @Inject
+    private StartupWarmup warmup;
+
+    @Inject
+    private Injector injector;
+
+    @Inject
+    private Provider<CallScoper> callScoper;
+
+    @Inject
+    private Provider<CallScopeProperties> callScopeProperties;
+
+    @Inject
+    private Provider<RequestContext> requestContext;
+
+    @Inject
+    @SuppressWarnings("rawtypes")
+    private Provider<AjaxCall> ajaxCallProvider;
+
+    @Inject
+    @SuppressWarnings("rawtypes")
+    private Provider<AjaxResponse> ajaxResponseProvider;
+
+    private AjaxCallReader ajaxCallReader;
+
+    private Router router;
+
+    private InterceptorChain<DataCallIntercepter<?>> dataInterceptors;
+
+    private Map<PageRouteIndex.PageRoute, Provider<IPage>> pageProviders = Map.of();
+
 
     @Override
     public HttpServer builder(HttpServer builder)
     {
+        if (PRELOAD_USER_AGENTS)
+        {
+            userAgentCache.preload();
+        }
+        if (LEGACY_SCOPE_PROPERTIES)
+        {
+            log.warning("The RoutingContext, HttpServerRequest, HttpServerResponse and StreamId call scope properties are deprecated and will "
+                    + "no longer be written in a future release, inject RequestContext instead. Set JW_LEGACY_SCOPE_PROPERTIES=false to stop "
+                    + "writing them now");
+        }
         Router router = Router.router(vertx);
+        this.router = router;
+        configureInterceptors();
+        configurePageProviders();
         configureDataServlet(router);
         configureCSSServlet(router);
         configureAjaxReceiveServlet(router);
         configureInternalDataServlet(router);
 
         configurePageServlet(router);
+        metrics.configure(router);
+
+        DispatchRegistry.events()
+                        .resolveAll();
+        DispatchRegistry.dataComponents()
+                        .resolveAll();
+        if (warmup.isEnabled())
+        {
+            // Before the server is returned, so it only starts listening once warm
+            warmup.run();
+        }
 
         return builder;
     }
 
+    /**
+     * @return The router holding the JWebMP routes, once the server has been built
+     */
+    public Router getRouter()
+    {
+        return router;
+    }
+
     @Override
     protected void configure()
     {
         super.configure();
         if (Boolean.parseBoolean(Environment.getProperty("BIND_JW_PAGES", "true")))
         {
-            ScanResult scanResult = IGuiceContext.instance()
-                                                 .getScanResult();
-
-            for (ClassInfo classInfo : scanResult.getClassesWithAnnotation(PageConfiguration.class))
+            for (PageRouteIndex.PageRoute route : PageRouteIndex.getInstance()
+                                                                .getRoutes())
             {
-                if (classInfo.isAbstract() || classInfo.isInterface() || classInfo.isStatic())
-                {
-                    continue;
-                }
+                bind(route.key()).to(route.pageClass())
+                                 .in(CallScope.class);
+            }
+        }
+    }
 
-                @SuppressWarnings("unchecked")
-                Class<IPage<?>> pageClass = (Class<IPage<?>>) classInfo.loadClass();
-                PageConfiguration pc = pageClass.getAnnotation(PageConfiguration.class);
-                String url = pc.url();
-                if (Strings.isNullOrEmpty(url))
-                {
-                    url = "/";
-                }
-                bind(Key.get(IPage.class, Names.named(url))).to(pageClass)
-                                                            .in(CallScope.class);
+    /**
+     * Orders the interceptor sets once into chains, inside a scope in case an interceptor is call scoped, and exports
+     * their timings. The interceptors themselves are provided by their class for every call.
+     */
+    private void configureInterceptors()
+    {
+        ajaxPipeline.configure();
+        CallScoper scoper = callScoper.get();
+        scoper.enter();
+        try
+        {
+            dataInterceptors = InterceptorChain.of("data", injector.getInstance(DataCallInterceptorKey),
+                    type -> injector.getProvider(type)::get, (interceptor, call, response) -> interceptor.intercept(call, response));
+            metrics.addInterceptorChain(dataInterceptors);
+        }
+        finally
+        {
+            scoper.exit();
+        }
+    }
+
+    /**
+     * Resolves the provider of every page route once, so no request looks up a binding
+     */
+    private void configurePageProviders()
+    {
+        Map<PageRouteIndex.PageRoute, Provider<IPage>> providers = new IdentityHashMap<>();
+        for (PageRouteIndex.PageRoute route : PageRouteIndex.getInstance()
+                                                            .getRoutes())
+        {
+            try
+            {
+                providers.put(route, injector.getProvider(route.key()));
             }
+            catch (ConfigurationException e)
+            {
+                log.log(Level.FINE, "No binding for page " + route.url() + ", it is resolved on each request", e);
+            }
+        }
+        pageProviders = providers;
+    }
+
+    private IPage<?> pageOf(PageRouteIndex.PageRoute route)
+    {
+        if (route == null)
+        {
+            return IGuiceContext.get(IPage.class);
         }
+        Provider<IPage> provider = pageProviders.get(route);
+        return provider == null ? IGuiceContext.get(route.key()) : provider.get();
     }
 
     private void configureDataServlet(Router router)
     {
         router.route(DATA_LOCATION)
               .handler(routingContext -> {
-                  vertx.executeBlocking(() -> {
-                      CallScoper scoper = IGuiceContext.get(CallScoper.class);
+                  String componentID = routingContext.request()
+                                                     .params()
+                                                     .get("component");
+                  @SuppressWarnings("rawtypes")
+                  Provider<? extends IDataComponent> componentProvider = DispatchRegistry.dataComponents()
+                                                                                         .find(componentID);
+                  // Named only once the component is known, so made up names can not use up the metric names
+                  timeRequest(routingContext, "data", componentProvider == null ? "unknown" : componentID);
+                  if (componentProvider == null)
+                  {
+                      log.log(Level.FINE, "Rejected data request for unknown component {0}", componentID);
+                      routingContext.response()
+                                    .setStatusCode(404)
+                                    .end();
+                      return;
+                  }
+                  executeAdmitted(routingContext, "data", null, () -> {
+                      CallScoper scoper = callScoper.get();
                       scoper.enter();
                       try
                       {
                           configureScopeProperties(routingContext);
 
-                          HttpServerRequest request = routingContext.request();
                           HttpServerResponse response = routingContext.response();
 
-                          String componentID = request.params()
-                                                      .get("component");
                           StringBuilder responseString = new StringBuilder();
+                          RouteMetrics.Sample render = metrics.start("data", componentID);
                           try
                           {
-                              @SuppressWarnings("unchecked")
-                              Class<? extends IDataComponent> clazz = (Class<? extends IDataComponent>)
-                                      Class.forName(componentID.replace(CHAR_UNDERSCORE, CHAR_DOT));
-                              IDataComponent component = get(clazz);
+                              IDataComponent component = componentProvider.get();
                               StringBuilder renderData = component.renderData();
                               responseString.append(renderData);
+                              render.stop(false);
                           }
                           catch (Exception e)
                           {
+                              render.stop(true);
                               log.log(Level.SEVERE, MessageFormat.format("Cannot render data for component {0}", componentID), e);
+                              response.setStatusCode(500)
+                                      .end();
                               return null;
                           }
-                          for (DataCallIntercepter<?> dataCallIntercepter : get(DataCallInterceptorKey))
-                          {
-                              dataCallIntercepter.intercept(get(AjaxCall.class), get(AjaxResponse.class));
-                          }
-                          response.putHeader(CONTENT_TYPE, HTML_HEADER_JSON);
-                          response.write(responseString.toString(), StandardCharsets.UTF_8.toString());
+                          dataInterceptors.intercept(ajaxCallProvider.get(), ajaxResponseProvider.get())
+                                          .await()
+                                          .indefinitely();
+                          responseWriter.send(routingContext, "data", HTML_HEADER_JSON, responseString);
                       }
                       finally
                       {
@@ -146,326 +326,500 @@ public class JWebMPVertx extends AbstractModule implements IGuiceModule<JWebMPVe
 
     private void configureCSSServlet(Router router)
     {
+        router.get(CSS_LOCATION + "/:version")
+              .handler(routingContext -> {
+                  RenderedContent css = cssCache.getVersion(routingContext.pathParam("version"));
+                  if (css != null)
+                  {
+                      sendRenderedContent(routingContext, "css", css, HTML_HEADER_CSS, CACHE_CONTROL_IMMUTABLE);
+                      return;
+                  }
+                  if (Strings.isNullOrEmpty(routingContext.request()
+                                                          .getParam(CssCache.PAGE_PARAMETER)))
+                  {
+                      routingContext.response()
+                                    .setStatusCode(404)
+                                    .end();
+                      return;
+                  }
+                  // No longer held, or from an earlier deployment, so rendered again for the page that linked it
+                  sendPageCss(routingContext);
+              });
         router.route(CSS_LOCATION)
+              .handler(this::sendPageCss);
+    }
+
+    /**
+     * Sends the stylesheet of the page named by the {@value CssCache#PAGE_PARAMETER} parameter, or of the page bound in
+     * the call scope without one
+     */
+    private void sendPageCss(RoutingContext routingContext)
+    {
+        String pageUrl = routingContext.request()
+                                       .getParam(CssCache.PAGE_PARAMETER);
+        PageRouteIndex.PageRoute route = Strings.isNullOrEmpty(pageUrl) ? null : PageRouteIndex.getInstance()
+                                                                                            .match(pageUrl);
+        timeRequest(routingContext, "css", route == null ? null : route.url());
+        if (route == null && !Strings.isNullOrEmpty(pageUrl))
+        {
+            routingContext.response()
+                          .setStatusCode(404)
+                          .end();
+            return;
+        }
+        String cacheKey = null;
+        if (route != null)
+        {
+            RenderedPageCache.Policy cachePolicy = pageCache.getPolicy(route.pageClass());
+            varyBy(routingContext, cachePolicy);
+            cacheKey = cssCache.keyFor(route.pageClass(), cachePolicy, routingContext.request());
+        }
+        if (cacheKey != null)
+        {
+            RenderedContent cached = cssCache.get(cacheKey);
+            if (cached != null)
+            {
+                sendRenderedContent(routingContext, "css", cached, HTML_HEADER_CSS, CACHE_CONTROL_REVALIDATE);
+                return;
+            }
+        }
+        executeAdmitted(routingContext, "css", null, () -> {
+            CallScoper scoper = callScoper.get();
+            scoper.enter();
+            try
+            {
+                configureScopeProperties(routingContext);
+                IPage<?> page = pageOf(route);
+                String key = cacheKey;
+                if (key == null)
+                {
+                    RenderedPageCache.Policy cachePolicy = pageCache.getPolicy(page.getClass());
+                    varyBy(routingContext, cachePolicy);
+                    key = cssCache.keyFor(page.getClass(), cachePolicy, routingContext.request());
+                    RenderedContent cached = cssCache.get(key);
+                    if (cached != null)
+                    {
+                        sendRenderedContent(routingContext, "css", cached, HTML_HEADER_CSS, CACHE_CONTROL_REVALIDATE);
+                        return null;
+                    }
+                }
+                StringBuilder css = renderCss(page, route == null ? page.getClass()
+                                                                        .getName() : route.url());
+                sendRenderedContent(routingContext, "css", cssCache.put(key, css), HTML_HEADER_CSS, CACHE_CONTROL_REVALIDATE);
+            }
+            finally
+            {
+                scoper.exit();
+            }
+            return null;
+        });
+    }
+
+    private StringBuilder renderCss(IPage<?> page, String name)
+    {
+        RouteMetrics.Sample render = metrics.start("css", name);
+        try
+        {
+            @SuppressWarnings("rawtypes")
+            IComponentStyleBase body = (IComponentStyleBase) page.getBody();
+            StringBuilder css = body.renderCss(0);
+            render.stop(false);
+            return css;
+        }
+        catch (RuntimeException e)
+        {
+            render.stop(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Links a rendered page to the versioned url of its stylesheet, rendering the stylesheet from the same page if it is
+     * not held yet
+     */
+    private String linkCss(RoutingContext routingContext, PageRouteIndex.PageRoute route, RenderedPageCache.Policy cachePolicy, IPage<?> page,
+                           String pageHtml)
+    {
+        String key = cssCache.keyFor(route.pageClass(), cachePolicy, routingContext.request());
+        if (cssCache.get(key) == null)
+        {
+            try
+            {
+                cssCache.put(key, renderCss(page, route.url()));
+            }
+            catch (RuntimeException e)
+            {
+                // The page is still linked to its stylesheet by url, which renders it again on request
+                log.log(Level.FINE, "Unable to render the CSS of " + route.url() + " with the page", e);
+            }
+        }
+        return CssCache.link(pageHtml, cssCache.urlFor(key, route.url()));
+    }
+
+    /**
+     * Finds the page that referenced a resource, so page specific resources can be served without constructing the page
+     *
+     * @param request The resource request
+     * @return The route of the referring page, or null if the referer is missing or not a page
+     */
+    private PageRouteIndex.PageRoute findRefererRoute(HttpServerRequest request)
+    {
+        String referer = request.getHeader(REFERER);
+        if (Strings.isNullOrEmpty(referer))
+        {
+            return null;
+        }
+        try
+        {
+            return PageRouteIndex.getInstance()
+                                 .match(URI.create(referer)
+                                           .getPath());
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    private void configureAjaxReceiveServlet(Router router)
+    {
+        ajaxCallReader = new AjaxCallReader();
+        router.route(AJAX_SCRIPT_LOCATION + AJAX_BATCH_SUFFIX)
               .handler(routingContext -> {
-                  vertx.executeBlocking(() -> {
-                      CallScoper scoper = IGuiceContext.get(CallScoper.class);
-                      scoper.enter();
+                  timeRequest(routingContext, "ajax", "batch");
+                  // Many calls in one envelope, fired together and answered as an array in call order
+                  ajaxCallReader.readBody(routingContext, bodyBuffer -> {
+                      List<JsonNode> calls;
                       try
                       {
-                          configureScopeProperties(routingContext);
-                          HttpServerResponse response = routingContext.response();
-                          IPage<?> page = IGuiceContext.get(IPage.class);
-                          @SuppressWarnings("rawtypes")
-                          StringBuilder css = ((IComponentStyleBase) page.getBody()).renderCss(0);
-                          response.putHeader(CONTENT_TYPE, HTML_HEADER_CSS);
-                          response.write(css.toString(), StandardCharsets.UTF_8.toString());
+                          calls = ajaxCallReader.readBatch(bodyBuffer);
                       }
-                      finally
+                      catch (InvalidRequestException ie)
                       {
-                          scoper.exit();
+                          log.log(Level.SEVERE, "[SessionID]-[" + routingContext.request()
+                                                                               .streamId() + "];[Exception]-[Invalid Batch Request]", ie);
+                          responseWriter.send(routingContext, "ajax batch", HTML_HEADER_JSON, ajaxPipeline.errorResponse(ie)
+                                                                                           .toJson());
+                          return;
                       }
-                      return null;
+                      if (calls.isEmpty())
+                      {
+                          responseWriter.send(routingContext, "ajax batch", HTML_HEADER_JSON, Buffer.buffer("[]"));
+                          return;
+                      }
+                      // Every call is started at once, in its own scope entered when it is subscribed, so a call waiting on
+                      // i/o does not hold up the ones after it. The joined list keeps each response at the index of its call.
+                      List<Uni<String>> fired = new ArrayList<>(calls.size());
+                      for (JsonNode call : calls)
+                      {
+                          fired.add(Uni.createFrom()
+                                       .deferred(() -> fireAjaxCall(routingContext, target -> ajaxCallReader.read(call, target))));
+                      }
+                      Cancellable running = Uni.join()
+                                               .all(fired)
+                                               .andFailFast()
+                                               .subscribe()
+                                               .with(jsonResponses -> responseWriter.send(routingContext, "ajax batch", HTML_HEADER_JSON, "[" + String.join(",", jsonResponses) + "]"),
+                                                     failure -> sendAjaxFailure(routingContext, "ajax batch", failure));
+                      cancelOnDisconnect(routingContext, running);
                   });
               });
-    }
 
-    private void configureAjaxReceiveServlet(Router router)
-    {
+        if (componentDiffer.isEnabled())
+        {
+            // A client that no longer holds the base of a patch fetches the full html of the new version instead
+            router.get(AJAX_SCRIPT_LOCATION + AJAX_VERSION_SUFFIX + "/:version")
+                  .handler(routingContext -> {
+                      String html = componentDiffer.getHtml(routingContext.pathParam("version"));
+                      if (html == null)
+                      {
+                          routingContext.response()
+                                        .setStatusCode(404)
+                                        .end();
+                          return;
+                      }
+                      responseWriter.send(routingContext, "ajax version", HTML_HEADER_DEFAULT_CONTENT_TYPE, html);
+                  });
+        }
+
         router.route(AJAX_SCRIPT_LOCATION)
               .handler(routingContext -> {
-                  // Prepare per-request scope and request object
-                  configureScopeProperties(routingContext);
-                  HttpServerRequest request = routingContext.request();
+                  timeRequest(routingContext, "ajax", null);
+                  // Read the body asynchronously (don’t block the event loop), rejecting oversized payloads up front
+                  ajaxCallReader.readBody(routingContext, bodyBuffer -> {
+                      // Fully reactive: do not block/await here. The response is ended once the event chain terminates.
+                      // Note: We intentionally avoid executeBlocking here. The body handler runs on the Vert.x event loop and fireEvent() returns a reactive Uni.
+                      Cancellable running = fireAjaxCall(routingContext, target -> ajaxCallReader.read(bodyBuffer, target))
+                              .subscribe()
+                              .with(json -> responseWriter.send(routingContext, "ajax", HTML_HEADER_JSON, json),
+                                      failure -> sendAjaxFailure(routingContext, "ajax", failure));
+                      cancelOnDisconnect(routingContext, running);
+                  });
+              });
+    }
 
-                  // Read the body asynchronously (don’t block the event loop)
-                  request.bodyHandler(bodyBuffer -> {
-                      CallScoper scoper = IGuiceContext.get(CallScoper.class);
-                      scoper.enter();
-                      try
-                      {
-                          try
-                          {
-                              String bodyString = bodyBuffer.toString();
+    /**
+     * Answers an AJAX request whose event chain failed outside the pipeline, such as while diffing, with the error
+     * response, or a 500 if even that cannot be sent
+     */
+    private void sendAjaxFailure(RoutingContext routingContext, String route, Throwable failure)
+    {
+        log.log(Level.SEVERE, "[SessionID]-[" + routingContext.request()
+                                                             .streamId() + "];[Exception]-[Unable to answer the AJAX call]", failure);
+        try
+        {
+            responseWriter.send(routingContext, route, HTML_HEADER_JSON, ajaxPipeline.errorResponse(failure)
+                                                                                     .toJson());
+        }
+        catch (RuntimeException e)
+        {
+            responseWriter.fail(routingContext, failure);
+        }
+    }
 
-                              // Deserialize inbound call
-                              AjaxCall<?> ajaxCallIncoming = IJsonRepresentation.From(bodyString, AjaxCall.class);
-                              AjaxCall<?> ajaxCall = get(AjaxCall.class);
-                              ajaxCall.fromCall(ajaxCallIncoming);
-                              ajaxCall.setPageCall(true);
+    /**
+     * Cancels the event chain of a request whose client disconnects before it is answered, so the event stops running
+     */
+    private void cancelOnDisconnect(RoutingContext routingContext, Cancellable running)
+    {
+        routingContext.addEndHandler(result -> {
+            if (result.failed())
+            {
+                running.cancel();
+            }
+        });
+    }
 
-                              // Prepare response holder and event
-                              AjaxResponse<?> ajaxResponse = get(AjaxResponse.class);
-                              IEvent<?, ?> triggerEvent = processEvent();
+    private Uni<String> fireAjaxCall(RoutingContext routingContext, AjaxEventPipeline.AjaxCallSource source)
+    {
+        Uni<String> response = ajaxPipeline.fire(String.valueOf(routingContext.request()
+                                                                              .streamId()), () -> configureScopeProperties(routingContext), source);
+        if (!componentDiffer.isEnabled())
+        {
+            return response;
+        }
+        String clientVersions = routingContext.request()
+                                              .getHeader(ComponentDiffer.VERSIONS_HEADER);
+        return response.map(json -> componentDiffer.diff(json, clientVersions));
+    }
 
-                              // Interceptors
-                              for (AjaxCallIntercepter<?> ajaxCallIntercepter : get(AjaxCallInterceptorKey))
-                              {
-                                  ajaxCallIntercepter.intercept(ajaxCall, ajaxResponse);
-                              }
+    /**
+     * Finds the event named by the call in scope
+     *
+     * @return The event to fire
+     * @throws InvalidRequestException If the call does not name a registered event
+     * @deprecated Events are resolved by {@link AjaxEventPipeline}, override or call {@link AjaxEventPipeline#processEvent()}
+     */
+    @Deprecated
+    protected IEvent<?, ?> processEvent() throws InvalidRequestException
+    {
+        return ajaxPipeline.processEvent();
+    }
 
-                              // Fully reactive: do not block/await here. Subscribe and end response in the terminal callbacks.
-                              // Note: We intentionally avoid executeBlocking here. bodyHandler runs on the Vert.x event loop and fireEvent() returns a reactive Uni.
-                              // The Uni is subscribed below; any errors will be routed to the failure handler which returns a JSON error response.
-                              triggerEvent.fireEvent(ajaxCall, ajaxResponse)
-                                          // Optional timeout to guard long/never-completing chains
-                                          .ifNoItem()
-                                          .after(Duration.ofSeconds(10))
-                                          .fail()
-                                          .subscribe()
-                                          .with(
-                                                  unused -> {
-                                                      try
-                                                      {
-                                                          routingContext.response()
-                                                                        .putHeader(CONTENT_TYPE, HTML_HEADER_JSON)
-                                                                        .end(ajaxResponse.toJson());
-                                                      }
-                                                      finally
-                                                      {
-                                                          scoper.exit();
-                                                      }
-                                                  },
-                                                  failure -> {
-                                                      try
-                                                      {
-                                                          AjaxResponse<?> err = new AjaxResponse<>();
-                                                          err.setSuccess(false);
-
-                                                          if (failure instanceof InvalidRequestException ie)
-                                                          {
-                                                              AjaxResponseReaction<?> arr = new AjaxResponseReaction<>(
-                                                                      "Invalid Request Value",
-                                                                      "A value in the request was found to be incorrect.<br>" + ie.getMessage(),
-                                                                      ReactionType.DialogDisplay
-                                                              );
-                                                              arr.setResponseType(AjaxResponseType.Danger);
-                                                              err.addReaction(arr);
-                                                              log.log(Level.SEVERE, "[SessionID]-[" + request.streamId() + "];[Exception]-[Invalid Request]", ie);
-                                                          }
-                                                          else
-                                                          {
-                                                              AjaxResponseReaction<?> arr = new AjaxResponseReaction<>(
-                                                                      "Unknown Error",
-                                                                      "An AJAX call resulted in an unknown server error<br>" + failure.getMessage() +
-                                                                              "<br>" + ExceptionUtils.getStackTrace(failure),
-                                                                      ReactionType.DialogDisplay
-                                                              );
-                                                              arr.setResponseType(AjaxResponseType.Danger);
-                                                              err.addReaction(arr);
-                                                              log.log(Level.SEVERE, "Unknown in ajax reply\n", failure);
-                                                          }
-
-                                                          routingContext.response()
-                                                                        .putHeader(CONTENT_TYPE, HTML_HEADER_JSON)
-                                                                        .end(err.toJson());
-                                                      }
-                                                      finally
-                                                      {
-                                                          scoper.exit();
-                                                      }
-                                                  }
-                                          );
+    private void configurePageServlet(Router router)
+    {
+        if (Boolean.parseBoolean(Environment.getProperty("BIND_JW_PAGES", "true")))
+        {
+            PageRouteIndex pageRouteIndex = PageRouteIndex.getInstance();
+            router.get()
+                  .handler(routingContext -> {
+                      PageRouteIndex.PageRoute route = pageRouteIndex.match(routingContext.normalizedPath());
+                      if (route == null)
+                      {
+                          routingContext.next();
+                          return;
+                      }
+                      timeRequest(routingContext, "page", route.url());
+                      RenderedPageCache.Policy cachePolicy = pageCache.getPolicy(route.pageClass());
+                      varyBy(routingContext, cachePolicy);
+                      String cacheKey = cachePolicy == null ? null : pageCache.keyFor(route.url(), cachePolicy, routingContext.request());
+                      if (cacheKey != null)
+                      {
+                          RenderedContent cached = pageCache.get(cacheKey);
+                          if (cached != null)
+                          {
+                              sendRenderedContent(routingContext, "page " + route.url(), cached, HTML_HEADER_DEFAULT_CONTENT_TYPE, CACHE_CONTROL_REVALIDATE);
+                              return;
                           }
-                          catch (InvalidRequestException ie)
+                      }
+                      executeAdmitted(routingContext, "page", route.url(), () -> {
+                          CallScoper scoper = callScoper.get();
+                          scoper.enter();
+                          try
                           {
-                              // Synchronous failure before we could subscribe (e.g., JSON mapping of the envelope)
-                              try
+                              configureScopeProperties(routingContext);
+                              IPage<?> page = pageOf(route);
+                              if (STREAM_PAGES && cacheKey == null)
                               {
-                                  AjaxResponse<?> ajaxResponse = new AjaxResponse<>();
-                                  ajaxResponse.setSuccess(false);
-                                  AjaxResponseReaction<?> arr = new AjaxResponseReaction<>(
-                                          "Invalid Request Value",
-                                          "A value in the request was found to be incorrect.<br>" + ie.getMessage(),
-                                          ReactionType.DialogDisplay
-                                  );
-                                  arr.setResponseType(AjaxResponseType.Danger);
-                                  ajaxResponse.addReaction(arr);
-                                  log.log(Level.SEVERE, "[SessionID]-[" + request.streamId() + "];[Exception]-[Invalid Request]", ie);
-                                  routingContext.response()
-                                                .putHeader(CONTENT_TYPE, HTML_HEADER_JSON)
-                                                .end(ajaxResponse.toJson());
+                                  streamPage(routingContext, route, cachePolicy, page);
+                                  return null;
                               }
-                              finally
+                              RouteMetrics.Sample render = metrics.start("page", route.url());
+                              String pageHtml;
+                              try
                               {
-                                  scoper.exit();
+                                  pageHtml = page.toString(true);
+                                  render.stop(false);
                               }
-                          }
-                          catch (Exception T)
-                          {
-                              // Other synchronous failures before subscription
-                              try
+                              catch (RuntimeException e)
                               {
-                                  AjaxResponse<?> ajaxResponse = new AjaxResponse<>();
-                                  ajaxResponse.setSuccess(false);
-                                  AjaxResponseReaction<?> arr = new AjaxResponseReaction<>(
-                                          "Unknown Error",
-                                          "An AJAX call resulted in an unknown server error<br>" + T.getMessage() +
-                                                  "<br>" + ExceptionUtils.getStackTrace(T),
-                                          ReactionType.DialogDisplay
-                                  );
-                                  arr.setResponseType(AjaxResponseType.Danger);
-                                  ajaxResponse.addReaction(arr);
-                                  log.log(Level.SEVERE, "Unknown in ajax reply\n", T);
-                                  routingContext.response()
-                                                .putHeader(CONTENT_TYPE, HTML_HEADER_JSON)
-                                                .end(ajaxResponse.toJson());
+                                  render.stop(true);
+                                  throw e;
                               }
-                              finally
+                              pageHtml = linkCss(routingContext, route, cachePolicy, page, pageHtml);
+                              if (cacheKey != null)
                               {
-                                  scoper.exit();
+                                  sendRenderedContent(routingContext, "page " + route.url(), pageCache.put(cacheKey, cachePolicy, pageHtml), HTML_HEADER_DEFAULT_CONTENT_TYPE,
+                                          CACHE_CONTROL_REVALIDATE);
+                                  return null;
                               }
-                          }
-                      }
-                      catch (Throwable swallow)
-                      {
-                          // Last-resort guard (avoid leaking scope on unexpected errors in above blocks)
-                          try
-                          {
-                              AjaxResponse<?> ajaxResponse = new AjaxResponse<>();
-                              ajaxResponse.setSuccess(false);
-                              AjaxResponseReaction<?> arr = new AjaxResponseReaction<>(
-                                      "Unknown Error",
-                                      "An unexpected server error occurred<br>" + swallow.getMessage() +
-                                              "<br>" + ExceptionUtils.getStackTrace(swallow),
-                                      ReactionType.DialogDisplay
-                              );
-                              arr.setResponseType(AjaxResponseType.Danger);
-                              ajaxResponse.addReaction(arr);
-                              routingContext.response()
-                                            .putHeader(CONTENT_TYPE, HTML_HEADER_JSON)
-                                            .end(ajaxResponse.toJson());
+                              responseWriter.send(routingContext, "page " + route.url(), HTML_HEADER_DEFAULT_CONTENT_TYPE, pageHtml);
                           }
                           finally
                           {
                               scoper.exit();
                           }
-                      }
+                          return null;
+                      });
                   });
-              });
+        }
     }
 
-    private void configurePageServlet(Router router)
+    /**
+     * Writes the head of an uncached page as soon as it is rendered, then streams the body without waiting on the client
+     */
+    private void streamPage(RoutingContext routingContext, PageRouteIndex.PageRoute route, RenderedPageCache.Policy cachePolicy, IPage<?> page)
     {
-        if (Boolean.parseBoolean(Environment.getProperty("BIND_JW_PAGES", "true")))
+        ChunkedPageWriter writer = new ChunkedPageWriter(routingContext.response(), STREAM_CHUNK_SIZE);
+        RouteMetrics.Sample render = metrics.start("page", route.url());
+        String body;
+        try
         {
-            ScanResult scanResult = IGuiceContext.instance()
-                                                 .getScanResult();
-
-            for (ClassInfo classInfo : scanResult.getClassesWithAnnotation(PageConfiguration.class))
-            {
-                if (classInfo.isAbstract() || classInfo.isInterface() || classInfo.isStatic())
-                {
-                    continue;
-                }
-
-                @SuppressWarnings("unchecked")
-                Class<IPage<?>> pageClass = (Class<IPage<?>>) classInfo.loadClass();
-                PageConfiguration pc = pageClass.getAnnotation(PageConfiguration.class);
-                String url = pc.url();
-                if (Strings.isNullOrEmpty(url))
-                {
-                    url = "/";
-                }
-                String finalUrl = url;
-                router.getWithRegex(url + "*")
-                      .handler(routingContext -> {
-                          vertx.executeBlocking(() -> {
-                              CallScoper scoper = IGuiceContext.get(CallScoper.class);
-                              scoper.enter();
-                              try
-                              {
-                                  configureScopeProperties(routingContext);
-                                  IPage<?> page = IGuiceContext.get(Key.get(IPage.class, Names.named(finalUrl)));
-                                  String pageHtml = page.toString(true);
-                                  routingContext.response()
-                                                .putHeader(CONTENT_TYPE, HTML_HEADER_DEFAULT_CONTENT_TYPE);
-                                  routingContext.response()
-                                                .write(pageHtml, StandardCharsets.UTF_8.toString());
-                              }
-                              finally
-                              {
-                                  scoper.exit();
-                              }
-                              return null;
-                          });
-                      });
-            }
+            String head = page.getHead()
+                              .toString(true);
+            writer.writeHead(HTML_HEADER_DEFAULT_CONTENT_TYPE, linkCss(routingContext, route, cachePolicy, page, head));
+            body = page.getBody()
+                       .toString(true);
+            render.stop(false);
+        }
+        catch (RuntimeException e)
+        {
+            render.stop(true);
+            throw e;
         }
+        writer.writeBody(body)
+              .onFailure(failure -> log.log(Level.FINE, "Stopped streaming " + route.url(), failure));
     }
 
-    private void configureScopeProperties(RoutingContext routingContext)
+    /**
+     * Runs a blocking task once admission control lets the route and session take it, ending the response if it fails
+     */
+    private void executeAdmitted(RoutingContext routingContext, String stage, String name, Callable<Object> task)
     {
-        CallScopeProperties callScopeProperties = IGuiceContext.get(CallScopeProperties.class);
+        admission.admit(routingContext, stage, name, () -> blockingExecutor.execute(task)
+                                                                           .onFailure(failure -> responseWriter.fail(routingContext, failure)));
+    }
+
+    /**
+     * Times a request from now until its response ends, under the "request" stage
+     */
+    private void timeRequest(RoutingContext routingContext, String stage, String name)
+    {
+        RouteMetrics.Sample sample = metrics.start("request", name == null ? stage : stage + " " + name);
+        routingContext.addEndHandler(result -> sample.stop(result.failed() || routingContext.response()
+                                                                                            .getStatusCode() >= 500));
+    }
 
-        callScopeProperties.setSource(CallScopeSource.Http);
+    /**
+     * Marks a response as varying by the request header its page cache variant is read from
+     */
+    private static void varyBy(RoutingContext routingContext, RenderedPageCache.Policy policy)
+    {
+        String header = policy == null ? null : policy.variant()
+                                                      .vary();
+        if (header != null)
+        {
+            routingContext.response()
+                          .headers()
+                          .add(VARY, header);
+        }
+    }
 
-        callScopeProperties.getProperties()
-                           .put("RoutingContext", routingContext);
-        callScopeProperties.getProperties()
-                           .put("HttpServerRequest", routingContext.request());
-        callScopeProperties.getProperties()
-                           .put("HttpServerResponse", routingContext.response());
-        callScopeProperties.getProperties()
-                           .put("StreamId", routingContext.request()
-                                                          .streamId());
+    private void sendRenderedContent(RoutingContext routingContext, String route, RenderedContent content, String contentType, String cacheControl)
+    {
+        HttpServerResponse response = routingContext.response();
+        ContentEncoding encoding = compression.select(routingContext, content.body().length);
+        response.putHeader(ETAG, content.etag(encoding))
+                .putHeader(CACHE_CONTROL, cacheControl);
+        if (content.matches(routingContext.request()
+                                          .getHeader(IF_NONE_MATCH)))
+        {
+            response.setStatusCode(304)
+                    .end();
+            return;
+        }
+        responseWriter.send(routingContext, route, contentType, compression.encode(routingContext, content, encoding));
+    }
 
+    private void configureScopeProperties(RoutingContext routingContext)
+    {
+        CallScopeProperties properties = callScopeProperties.get();
+        properties.setSource(CallScopeSource.Http);
+        requestContext.get()
+                      .set(routingContext);
+        if (LEGACY_SCOPE_PROPERTIES)
+        {
+            properties.getProperties()
+                      .put("RoutingContext", routingContext);
+            properties.getProperties()
+                      .put("HttpServerRequest", routingContext.request());
+            properties.getProperties()
+                      .put("HttpServerResponse", routingContext.response());
+            properties.getProperties()
+                      .put("StreamId", routingContext.request()
+                                                     .streamId());
+        }
     }
 
     private void configureInternalDataServlet(Router router)
     {
+        Map<String, CharSequence> staticVariables = new HashMap<>();
+        staticVariables.put("AJAXLOCATION", AJAX_SCRIPT_LOCATION);
+        staticVariables.put("AJAXBATCHLOCATION", AJAX_SCRIPT_LOCATION + AJAX_BATCH_SUFFIX);
+        staticVariables.put("AJAXBATCHSIZE", String.valueOf(AjaxCallReader.MAX_BATCH_SIZE));
+        staticVariables.put("AJAXVERSIONLOCATION", AJAX_SCRIPT_LOCATION + AJAX_VERSION_SUFFIX);
+        staticVariables.put("AJAXDIFFENABLED", String.valueOf(componentDiffer.isEnabled()));
+        staticVariables.put("WEBSOCKETLOCATION", WEBSOCKET_LOCATION);
+        staticVariables.put("AJAXROUTEEVENTS", String.valueOf(ROUTE_EVENTS));
+        SiteLoaderTemplate.Source siteLoader = new SiteLoaderTemplate.Source(FileTemplates.getFileTemplate(JWebMPVertx.class, "jwscript", "siteloader"),
+                FileTemplates.getTemplateVariables(), staticVariables);
         router.get(JW_SCRIPT_LOCATION)
               .handler(routingContext -> {
-                  vertx.executeBlocking(() -> {
-                      CallScoper scoper = IGuiceContext.get(CallScoper.class);
+                  PageRouteIndex.PageRoute route = findRefererRoute(routingContext.request());
+                  if (route != null)
+                  {
+                      sendSiteLoader(routingContext, siteLoader, route.pageClass()
+                                                                      .getCanonicalName());
+                      return;
+                  }
+                  executeAdmitted(routingContext, "script", null, () -> {
+                      CallScoper scoper = callScoper.get();
                       scoper.enter();
                       try
                       {
                           configureScopeProperties(routingContext);
-                          FileTemplates.getFileTemplate(JWebMPVertx.class, "jwscript", "siteloader");
-                          FileTemplates.getTemplateVariables()
-                                       .put("SITEADDRESSINSERT", new StringBuilder(routingContext.request()
-                                                                                                 .authority()
-                                                                                                 .host()));
-                          FileTemplates.getTemplateVariables()
-                                       .put("ROOTADDRESSINSERT", new StringBuilder(routingContext.request()
-                                                                                                 .authority()
-                                                                                                 .host()));
+                          String pageClass;
                           try
                           {
-                              FileTemplates.getTemplateVariables()
-                                           .put("PAGECLASS", new StringBuilder(IGuiceContext.get(IPage.class)
-                                                                                            .getClass()
-                                                                                            .getCanonicalName()));
-
+                              pageClass = IGuiceContext.get(IPage.class)
+                                                       .getClass()
+                                                       .getCanonicalName();
                           }
                           catch (ProvisionException | OutOfScopeException e)
                           {
-                              FileTemplates.getTemplateVariables()
-                                           .put("PAGECLASS", new StringBuilder());
-                          }
-
-                          try
-                          {
-                              HttpServerRequest hsr = get(HttpServerRequest.class);
-                              FileTemplates.getTemplateVariables()
-                                           .put("%USERAGENT%", new StringBuilder(hsr.getHeader("user-agent")));
-                              FileTemplates.getTemplateVariables()
-                                           .put("%MYIP%", new StringBuilder(hsr.remoteAddress()
-                                                                               .host()));
-                              FileTemplates.getTemplateVariables()
-                                           .put("%REFERER%", new StringBuilder(hsr.getHeader("referer")));
-                          }
-                          catch (Throwable T)
-                          {
-
+                              pageClass = "";
                           }
-
-                          StringBuilder output = FileTemplates.renderTemplateScripts("jwscript");
-                          routingContext.response()
-                                        .putHeader(CONTENT_TYPE, HTML_HEADER_JAVASCRIPT);
-                          routingContext.response()
-                                        .write(output.toString(), StandardCharsets.UTF_8.toString());
+                          sendSiteLoader(routingContext, siteLoader, pageClass);
                       }
                       finally
                       {
@@ -477,24 +831,20 @@ public class JWebMPVertx extends AbstractModule implements IGuiceModule<JWebMPVe
               });
     }
 
-
-    protected IEvent<?, ?> processEvent() throws InvalidRequestException
+    private void sendSiteLoader(RoutingContext routingContext, SiteLoaderTemplate.Source siteLoader, String pageClass)
     {
-        IEvent<?, ?> triggerEvent = null;
-        try
-        {
-            AjaxCall<?> call = get(AjaxCall.class);
-            Class<?> eventClass = Class.forName(call.getClassName()
-                                                    .replace(CHAR_UNDERSCORE, CHAR_DOT));
-            triggerEvent = (IEvent<?, ?>) get(eventClass);
-        }
-        catch (ClassNotFoundException cnfe)
-        {
-            log.log(Level.FINEST, "Unable to find the event class specified", cnfe);
-            throw new InvalidRequestException("The Event To Be Triggered Could Not Be Found");
-        }
-        return triggerEvent;
+        HttpServerRequest request = routingContext.request();
+        String host = request.authority()
+                             .host();
+        Map<SiteLoaderTemplate.Slot, String> values = new EnumMap<>(SiteLoaderTemplate.Slot.class);
+        values.put(SiteLoaderTemplate.Slot.SiteAddress, host);
+        values.put(SiteLoaderTemplate.Slot.RootAddress, host);
+        values.put(SiteLoaderTemplate.Slot.PageClass, pageClass);
+        values.put(SiteLoaderTemplate.Slot.UserAgent, request.getHeader(USER_AGENT));
+        values.put(SiteLoaderTemplate.Slot.RemoteAddress, request.remoteAddress() == null ? null : request.remoteAddress()
+                                                                                                             .host());
+        values.put(SiteLoaderTemplate.Slot.Referer, request.getHeader(REFERER));
+        responseWriter.send(routingContext, "script", HTML_HEADER_JAVASCRIPT, siteLoader.get()
+                                                                                         .render(values));
     }
-
-
-}
+}
\ No newline at end of file
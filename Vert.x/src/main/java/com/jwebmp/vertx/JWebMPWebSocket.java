@@ -1,24 +1,133 @@
 package com.jwebmp.vertx;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.guicedee.client.CallScopeProperties;
+import com.guicedee.client.CallScopeSource;
 import com.guicedee.guicedservlets.websockets.options.WebSocketMessageReceiver;
 import com.guicedee.guicedservlets.websockets.services.IWebSocketMessageReceiver;
+import com.jwebmp.core.exceptions.InvalidRequestException;
+import com.jwebmp.vertx.implementations.WebSocketGroups;
 import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.jackson.DatabindCodec;
+import lombok.extern.java.Log;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 
+/**
+ * Receives AJAX calls sent over the websocket instead of as HTTP requests.
+ * <p>
+ * A message with the action {@code ajax} carries the call in its {@code call} data field and a client chosen
+ * {@code id}. The call runs through the same pipeline as the HTTP endpoint, and the response is written back to the
+ * connection that sent the call, and no other, as {@code {"id":..,"response":..}} so the client can match it to the
+ * call it sent, framed as a message on the connection's own address. Component versions for diffing are sent in
+ * {@code versions}, in the same form as the {@value ComponentDiffer#VERSIONS_HEADER} header, and a call without them
+ * is not diffed.
+ * <p>
+ * The call runs in the call scope the message was received in, so what the event sets in scope stays visible to the
+ * rest of the message's handling.
+ */
+@Log
 public class JWebMPWebSocket implements IWebSocketMessageReceiver<Void, JWebMPWebSocket>
 {
+    /**
+     * The websocket action of an AJAX call
+     */
+    public static final String AJAX_ACTION = "ajax";
+
+    @Inject
+    private AjaxEventPipeline pipeline;
+
+    @Inject
+    private ComponentDiffer componentDiffer;
+
+    @Inject
+    private WebSocketGroups groups;
+
+    @Inject
+    private Provider<CallScopeProperties> callScopeProperties;
 
     @Override
     public Set<String> messageNames()
     {
-        return Set.of();
+        return Set.of(AJAX_ACTION);
     }
 
     @Override
     public Uni<Void> receiveMessage(WebSocketMessageReceiver<?> message) throws SecurityException
     {
-        return Uni.createFrom()
-                  .voidItem();
+        Map<String, Object> data = message.getData();
+        Object id = data == null ? null : data.get("id");
+        // The reply goes to the sending connection only, captured here while its call scope is current
+        String connection = groups.currentConnection();
+        if (id == null || connection == null)
+        {
+            log.log(Level.WARNING, "Ignoring a websocket AJAX call without an id or a connection to reply to");
+            return Uni.createFrom()
+                      .voidItem();
+        }
+        ObjectMapper mapper = DatabindCodec.mapper();
+        Object versions = data.get("versions");
+        // The receive scope of the message is active, so the call runs in it rather than a scope of its own
+        Uni<String> response = pipeline.fireInScope(String.valueOf(id), () -> configureScopeProperties(message), target -> {
+            JsonNode call = readCall(mapper, data.get("call"));
+            try
+            {
+                return mapper.readerForUpdating(target)
+                             .readValue(call);
+            }
+            catch (IOException e)
+            {
+                throw new InvalidRequestException("The request could not be read - " + e.getMessage());
+            }
+        });
+        if (versions != null)
+        {
+            response = response.map(json -> componentDiffer.diff(json, versions.toString()));
+        }
+        return response.map(json -> {
+            ObjectNode reply = mapper.createObjectNode();
+            reply.putPOJO("id", id);
+            try
+            {
+                reply.set("response", mapper.readTree(json));
+            }
+            catch (IOException e)
+            {
+                reply.put("response", json);
+            }
+            groups.deliverTo(connection, connection, reply.toString());
+            return null;
+        });
+    }
+
+    private static JsonNode readCall(ObjectMapper mapper, Object call) throws InvalidRequestException
+    {
+        if (call == null)
+        {
+            throw new InvalidRequestException("The websocket message does not hold a call");
+        }
+        try
+        {
+            return call instanceof String json ? mapper.readTree(json) : mapper.valueToTree(call);
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            throw new InvalidRequestException("The request could not be read - " + e.getMessage());
+        }
+    }
+
+    private void configureScopeProperties(WebSocketMessageReceiver<?> message)
+    {
+        CallScopeProperties properties = callScopeProperties.get();
+        properties.setSource(CallScopeSource.WebSocket);
+        properties.getProperties()
+                  .put("WebSocketMessage", message);
     }
 }
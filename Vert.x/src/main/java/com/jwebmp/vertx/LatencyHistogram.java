@@ -0,0 +1,125 @@
+package com.jwebmp.vertx;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of durations with a relative error of about 3%.
+ * <p>
+ * Like HdrHistogram, values are bucketed by their power of two and then into 32 linear sub buckets, so recording is a
+ * few bit operations and one atomic increment. Durations from one nanosecond up to about an hour are tracked, longer
+ * ones are counted in the last bucket.
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 41;
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a duration
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(Math.min(value, MAX_VALUE)));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    static int indexOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((magnitude - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    static long lowestValueAt(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+        int magnitude = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long subBucket = index & (SUB_BUCKETS - 1);
+        return (SUB_BUCKETS + subBucket) << (magnitude - SUB_BUCKET_BITS);
+    }
+
+    static long highestValueAt(int index)
+    {
+        return index + 1 < BUCKETS ? lowestValueAt(index + 1) - 1 : MAX_VALUE;
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100
+     * @return The duration in nanoseconds at the percentile, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= rank)
+            {
+                return Math.min(highestValueAt(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    public long getTotalNanos()
+    {
+        return totalNanos.sum();
+    }
+
+    public double getMeanNanos()
+    {
+        long c = count.sum();
+        return c == 0 ? 0 : (double) totalNanos.sum() / c;
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "count=" + getCount() + ", p50=" + getValueAtPercentile(50) / 1000 + "us, p99=" + getValueAtPercentile(99) / 1000
+                + "us, max=" + getMaxNanos() / 1000 + "us";
+    }
+}
@@ -0,0 +1,53 @@
+package com.jwebmp.vertx;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A low overhead count, mean and maximum of recorded durations
+ */
+public final class LatencyStats
+{
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a duration
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos)
+    {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    public long getTotalNanos()
+    {
+        return totalNanos.sum();
+    }
+
+    public double getMeanNanos()
+    {
+        long c = count.sum();
+        return c == 0 ? 0 : (double) totalNanos.sum() / c;
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "count=" + getCount() + ", mean=" + (long) getMeanNanos() / 1000 + "us, max=" + getMaxNanos() / 1000 + "us";
+    }
+}
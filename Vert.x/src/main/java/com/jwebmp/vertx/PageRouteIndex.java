@@ -0,0 +1,180 @@
+package com.jwebmp.vertx;
+
+import com.google.common.base.Strings;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import com.guicedee.client.IGuiceContext;
+import com.jwebmp.core.annotations.PageConfiguration;
+import com.jwebmp.core.services.IPage;
+import io.github.classgraph.ClassInfo;
+import io.github.classgraph.ScanResult;
+import lombok.extern.java.Log;
+
+import java.util.*;
+
+/**
+ * An immutable index of every {@link PageConfiguration} page, built once from the {@link GeneratedRegistry} when there is
+ * one, and from the class scan otherwise.
+ * <p>
+ * The Guice bindings and the single page dispatch handler both read from this index, so the scan and class loading
+ * happen only once and each request is resolved with a single hash lookup regardless of the number of pages.
+ */
+@Log
+@SuppressWarnings("rawtypes")
+public final class PageRouteIndex
+{
+    private static volatile PageRouteIndex instance;
+
+    private final Map<String, PageRoute> routes;
+
+    PageRouteIndex(Collection<PageRoute> pageRoutes)
+    {
+        Map<String, PageRoute> map = new LinkedHashMap<>();
+        for (PageRoute pageRoute : pageRoutes)
+        {
+            PageRoute existing = map.putIfAbsent(normalize(pageRoute.url()), pageRoute);
+            if (existing != null)
+            {
+                log.warning("Page " + pageRoute.pageClass()
+                                               .getName() + " is mapped to the same url as " + existing.pageClass()
+                                                                                                       .getName() + " [" + pageRoute.url() + "], ignoring");
+            }
+        }
+        this.routes = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Returns the index for this application, reading the generated registry or scanning for pages on first use
+     *
+     * @return The page route index
+     */
+    public static PageRouteIndex getInstance()
+    {
+        PageRouteIndex index = instance;
+        if (index == null)
+        {
+            synchronized (PageRouteIndex.class)
+            {
+                index = instance;
+                if (index == null)
+                {
+                    GeneratedRegistry registry = GeneratedRegistry.getInstance();
+                    List<PageRoute> pageRoutes = registry != null ? load(registry) : scan(IGuiceContext.instance()
+                                                                                                      .getScanResult(), null);
+                    index = instance = new PageRouteIndex(pageRoutes);
+                }
+            }
+        }
+        return index;
+    }
+
+    private static List<PageRoute> scan(ScanResult scanResult, GeneratedRegistry registry)
+    {
+        List<PageRoute> pageRoutes = new ArrayList<>();
+        for (ClassInfo classInfo : scanResult.getClassesWithAnnotation(PageConfiguration.class))
+        {
+            if (classInfo.isAbstract() || classInfo.isInterface() || classInfo.isStatic()
+                    || registry != null && (registry.covers(classInfo) || registry.getPages()
+                                                                                  .containsKey(classInfo.getName())))
+            {
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            Class<? extends IPage> pageClass = (Class<? extends IPage>) classInfo.loadClass();
+            pageRoutes.add(PageRoute.of(pageClass));
+        }
+        return pageRoutes;
+    }
+
+    private static List<PageRoute> load(GeneratedRegistry registry)
+    {
+        List<PageRoute> pageRoutes = new ArrayList<>();
+        registry.getPages()
+                .forEach((className, url) -> {
+                    Class<?> pageClass = GeneratedRegistry.loadClass(className);
+                    if (pageClass != null && IPage.class.isAssignableFrom(pageClass))
+                    {
+                        @SuppressWarnings("unchecked")
+                        Class<? extends IPage> page = (Class<? extends IPage>) pageClass;
+                        pageRoutes.add(PageRoute.of(url, page));
+                    }
+                });
+        if (!GeneratedRegistry.SCAN_UNCOVERED)
+        {
+            return pageRoutes;
+        }
+        // Modules built without the processor have no registry, so their pages are taken from the scan
+        List<PageRoute> scanned = scan(IGuiceContext.instance()
+                                                    .getScanResult(), registry);
+        if (!scanned.isEmpty())
+        {
+            log.config("Found " + scanned.size() + " pages outside the generated registry");
+            pageRoutes.addAll(scanned);
+        }
+        return pageRoutes;
+    }
+
+    /**
+     * Finds the page mapped to the given request path
+     *
+     * @param path The (normalized) request path
+     * @return The route, or null if no page is mapped to the path
+     */
+    public PageRoute match(String path)
+    {
+        return routes.get(normalize(path));
+    }
+
+    /**
+     * @return All the registered page routes in scan order
+     */
+    public Collection<PageRoute> getRoutes()
+    {
+        return routes.values();
+    }
+
+    /**
+     * Normalizes a url or path so that trailing slashes do not affect the lookup
+     *
+     * @param path The path
+     * @return The path with trailing slashes removed, or / for the root
+     */
+    static String normalize(String path)
+    {
+        if (Strings.isNullOrEmpty(path))
+        {
+            return "/";
+        }
+        int end = path.length();
+        while (end > 1 && path.charAt(end - 1) == '/')
+        {
+            end--;
+        }
+        return end == path.length() ? path : path.substring(0, end);
+    }
+
+    /**
+     * A page class with its resolved url and Guice binding key
+     *
+     * @param url       The url from the page configuration
+     * @param pageClass The page class
+     * @param key       The named binding key for the page
+     */
+    public record PageRoute(String url, Class<? extends IPage> pageClass, Key<IPage> key)
+    {
+        static PageRoute of(Class<? extends IPage> pageClass)
+        {
+            PageConfiguration pc = pageClass.getAnnotation(PageConfiguration.class);
+            return of(pc.url(), pageClass);
+        }
+
+        static PageRoute of(String url, Class<? extends IPage> pageClass)
+        {
+            if (Strings.isNullOrEmpty(url))
+            {
+                url = "/";
+            }
+            return new PageRoute(url, pageClass, Key.get(IPage.class, Names.named(url)));
+        }
+    }
+}
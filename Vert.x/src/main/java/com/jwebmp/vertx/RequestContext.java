@@ -0,0 +1,73 @@
+package com.jwebmp.vertx;
+
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * The HTTP request of the current call scope, set once when the scope is entered.
+ * <p>
+ * Inject it (or a provider of it) instead of reading the request back out of the call scope properties by name. The
+ * named properties RoutingContext, HttpServerRequest, HttpServerResponse and StreamId are deprecated: they are still
+ * written for existing readers, with a warning at startup, and JW_LEGACY_SCOPE_PROPERTIES=false stops writing them.
+ */
+public class RequestContext
+{
+    private RoutingContext routingContext;
+    private HttpServerRequest request;
+    private HttpServerResponse response;
+
+    /**
+     * Sets the request of the scope
+     *
+     * @param routingContext The routing context of the request
+     * @return This context
+     */
+    RequestContext set(RoutingContext routingContext)
+    {
+        this.routingContext = routingContext;
+        this.request = routingContext.request();
+        this.response = routingContext.response();
+        return this;
+    }
+
+    /**
+     * @return If the scope is serving an HTTP request
+     */
+    public boolean isHttp()
+    {
+        return routingContext != null;
+    }
+
+    /**
+     * @return The routing context, or null outside an HTTP request
+     */
+    public RoutingContext getRoutingContext()
+    {
+        return routingContext;
+    }
+
+    /**
+     * @return The request, or null outside an HTTP request
+     */
+    public HttpServerRequest getRequest()
+    {
+        return request;
+    }
+
+    /**
+     * @return The response, or null outside an HTTP request
+     */
+    public HttpServerResponse getResponse()
+    {
+        return response;
+    }
+
+    /**
+     * @return The HTTP/2 stream id of the request, or -1 outside an HTTP request or over HTTP/1
+     */
+    public int getStreamId()
+    {
+        return request == null ? -1 : request.streamId();
+    }
+}
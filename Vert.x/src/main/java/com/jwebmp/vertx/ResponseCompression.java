@@ -0,0 +1,141 @@
+package com.jwebmp.vertx;
+
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import com.jwebmp.vertx.cache.ContentEncoding;
+import com.jwebmp.vertx.cache.RenderedContent;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+import java.nio.charset.StandardCharsets;
+
+import static io.vertx.core.http.HttpHeaders.ACCEPT_ENCODING;
+import static io.vertx.core.http.HttpHeaders.CONTENT_ENCODING;
+import static io.vertx.core.http.HttpHeaders.VARY;
+
+/**
+ * Negotiates compression of the JWebMP responses.
+ * <p>
+ * Responses of at least JW_COMPRESSION_THRESHOLD bytes (default 1024) are compressed with the preferred coding the
+ * client accepts, at JW_COMPRESSION_LEVEL (default 6). Cached output is compressed once per coding and served from
+ * memory, dynamic output is compressed per response. Compression is switched off with JW_COMPRESSION=false.
+ * <p>
+ * Only the codings the JDK provides are offered, brotli is not negotiated.
+ */
+@Singleton
+public class ResponseCompression
+{
+    private static final boolean ENABLED = Boolean.parseBoolean(Environment.getProperty("JW_COMPRESSION", "true"));
+    private static final int THRESHOLD = Integer.parseInt(Environment.getProperty("JW_COMPRESSION_THRESHOLD", "1024"));
+    private static final int LEVEL = Integer.parseInt(Environment.getProperty("JW_COMPRESSION_LEVEL", "6"));
+
+    /**
+     * Chooses the coding for a response and marks the response as varying by Accept-Encoding
+     *
+     * @param routingContext The routing context
+     * @param length         The uncompressed length
+     * @return The coding, or null to send the response uncompressed
+     */
+    public ContentEncoding select(RoutingContext routingContext, int length)
+    {
+        if (!ENABLED)
+        {
+            return null;
+        }
+        MultiMap headers = routingContext.response()
+                                         .headers();
+        // Added to, so a Vary set by the route for its own variants is kept
+        if (!headers.contains(VARY, ACCEPT_ENCODING, true))
+        {
+            headers.add(VARY, ACCEPT_ENCODING);
+        }
+        if (length < THRESHOLD)
+        {
+            return null;
+        }
+        return ContentEncoding.negotiate(routingContext.request()
+                                                       .getHeader(ACCEPT_ENCODING));
+    }
+
+    /**
+     * Returns cached content in the negotiated coding, setting the Content-Encoding header
+     *
+     * @param routingContext The routing context
+     * @param content        The cached content
+     * @param encoding       The coding from {@link #select(RoutingContext, int)}
+     * @return The body to send
+     */
+    public Buffer encode(RoutingContext routingContext, RenderedContent content, ContentEncoding encoding)
+    {
+        if (encoding == null)
+        {
+            return Buffer.buffer(content.body());
+        }
+        routingContext.response()
+                      .putHeader(CONTENT_ENCODING, encoding.getToken());
+        return Buffer.buffer(content.body(encoding, LEVEL));
+    }
+
+    /**
+     * Compresses dynamic output if negotiated, setting the response headers
+     *
+     * @param routingContext The routing context
+     * @param body           The uncompressed body
+     * @return The body to send
+     */
+    public Buffer encode(RoutingContext routingContext, byte[] body)
+    {
+        return encode(routingContext, body, select(routingContext, body.length));
+    }
+
+    /**
+     * Compresses dynamic output in a coding already selected, setting the Content-Encoding header
+     *
+     * @param routingContext The routing context
+     * @param body           The uncompressed body
+     * @param encoding       The coding from {@link #select(RoutingContext, int)}
+     * @return The body to send
+     */
+    public Buffer encode(RoutingContext routingContext, byte[] body, ContentEncoding encoding)
+    {
+        if (encoding == null)
+        {
+            return Buffer.buffer(body);
+        }
+        HttpServerResponse response = routingContext.response();
+        response.putHeader(CONTENT_ENCODING, encoding.getToken());
+        return Buffer.buffer(encoding.encode(body, LEVEL));
+    }
+
+    /**
+     * Compresses dynamic output if negotiated, setting the response headers
+     *
+     * @param routingContext The routing context
+     * @param body           The uncompressed body
+     * @return The body to send
+     */
+    public Buffer encode(RoutingContext routingContext, CharSequence body)
+    {
+        return encode(routingContext, body.toString()
+                                          .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compresses dynamic output if negotiated, setting the response headers
+     *
+     * @param routingContext The routing context
+     * @param body           The uncompressed body
+     * @return The body to send
+     */
+    public Buffer encode(RoutingContext routingContext, Buffer body)
+    {
+        if (!ENABLED || body.length() < THRESHOLD)
+        {
+            select(routingContext, body.length());
+            return body;
+        }
+        return encode(routingContext, body.getBytes());
+    }
+}
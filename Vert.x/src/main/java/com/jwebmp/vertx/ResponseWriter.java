@@ -0,0 +1,139 @@
+package com.jwebmp.vertx;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import com.jwebmp.vertx.cache.ContentEncoding;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.java.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import static io.vertx.core.http.HttpHeaders.CONTENT_LENGTH;
+import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Sends the complete body of a JWebMP response in one write.
+ * <p>
+ * The body is encoded and compressed once into a single buffer, sent with its Content-Length and the response ended,
+ * so connections are never left open or fall back to chunked encoding. Bodies of at least
+ * JW_COMPRESSION_OFFLOAD_THRESHOLD bytes (default 65536) that are to be compressed on the event loop are compressed and
+ * sent by the blocking executor instead, so large AJAX responses do not hold up the loop; smaller bodies compress in
+ * well under a millisecond and are sent straight away. Failures end the response with a 500, or reset it once the head
+ * is written. The bytes sent are counted per route, up to JW_METRICS_MAX_NAMES routes.
+ */
+@Log
+@Singleton
+public class ResponseWriter
+{
+    private static final int MAX_ROUTES = Integer.parseInt(Environment.getProperty("JW_METRICS_MAX_NAMES", "512"));
+    private static final int OFFLOAD_THRESHOLD = Integer.parseInt(Environment.getProperty("JW_COMPRESSION_OFFLOAD_THRESHOLD", "65536"));
+
+    @Inject
+    private ResponseCompression compression;
+
+    @Inject
+    private BlockingExecutor blockingExecutor;
+
+    private final Map<String, LongAdder> bytesByRoute = new ConcurrentHashMap<>();
+
+    /**
+     * Encodes, compresses if negotiated and sends a body, ending the response
+     *
+     * @param routingContext The request
+     * @param route          The route the bytes are counted under
+     * @param contentType    The content type
+     * @param body           The uncompressed body
+     */
+    public void send(RoutingContext routingContext, String route, String contentType, CharSequence body)
+    {
+        byte[] bytes = body.toString()
+                           .getBytes(StandardCharsets.UTF_8);
+        ContentEncoding encoding = compression.select(routingContext, bytes.length);
+        if (encoding != null && bytes.length >= OFFLOAD_THRESHOLD && Context.isOnEventLoopThread())
+        {
+            blockingExecutor.execute(() -> {
+                                send(routingContext, route, contentType, compression.encode(routingContext, bytes, encoding));
+                                return null;
+                            })
+                            .onFailure(failure -> fail(routingContext, failure));
+            return;
+        }
+        send(routingContext, route, contentType, compression.encode(routingContext, bytes, encoding));
+    }
+
+    /**
+     * Sends an encoded body, ending the response
+     *
+     * @param routingContext The request
+     * @param route          The route the bytes are counted under
+     * @param contentType    The content type
+     * @param body           The body as sent, after any compression
+     */
+    public void send(RoutingContext routingContext, String route, String contentType, Buffer body)
+    {
+        HttpServerResponse response = routingContext.response();
+        if (response.ended() || response.closed())
+        {
+            return;
+        }
+        response.putHeader(CONTENT_TYPE, contentType)
+                .putHeader(CONTENT_LENGTH, String.valueOf(body.length()))
+                .end(body);
+        bytesOf(route).add(body.length());
+    }
+
+    /**
+     * Ends a response whose body could not be produced
+     *
+     * @param routingContext The request
+     * @param failure        The failure
+     */
+    public void fail(RoutingContext routingContext, Throwable failure)
+    {
+        HttpServerResponse response = routingContext.response();
+        if (response.ended() || response.closed())
+        {
+            return;
+        }
+        log.log(Level.SEVERE, "Unable to complete the response to " + routingContext.request()
+                                                                                   .path(), failure);
+        if (response.headWritten())
+        {
+            // Part of the body is already sent, so the client can only be told by the connection
+            response.reset();
+            return;
+        }
+        response.setStatusCode(500)
+                .end();
+    }
+
+    private LongAdder bytesOf(String route)
+    {
+        String key = route == null ? RouteMetrics.OTHER : route;
+        LongAdder bytes = bytesByRoute.get(key);
+        if (bytes != null)
+        {
+            return bytes;
+        }
+        return bytesByRoute.computeIfAbsent(bytesByRoute.size() >= MAX_ROUTES ? RouteMetrics.OTHER : key, k -> new LongAdder());
+    }
+
+    /**
+     * @return The bytes sent by each route, sorted by route
+     */
+    public Map<String, Long> getBytesByRoute()
+    {
+        Map<String, Long> result = new TreeMap<>();
+        bytesByRoute.forEach((route, bytes) -> result.put(route, bytes.sum()));
+        return result;
+    }
+}
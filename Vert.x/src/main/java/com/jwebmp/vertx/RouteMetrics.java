@@ -0,0 +1,357 @@
+package com.jwebmp.vertx;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import com.jwebmp.vertx.cache.CssCache;
+import com.jwebmp.vertx.cache.RenderedPageCache;
+import com.jwebmp.vertx.implementations.UserAgentCache;
+import io.vertx.ext.web.Router;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms, error counts and in flight gauges of each handler stage, by page url, component or event class.
+ * <p>
+ * Stages are timed with {@link #start(String, String)} and {@link Sample#stop(boolean)}. The number of names tracked
+ * per stage is limited by JW_METRICS_MAX_NAMES (default 512), later names are counted under {@value #OTHER}.
+ * <p>
+ * With JW_METRICS_ENDPOINT=true the metrics are served in the Prometheus text format on JW_METRICS_PATH (default
+ * /jwmetrics), to loopback clients only unless JW_METRICS_LOCAL_ONLY=false.
+ */
+@Singleton
+public class RouteMetrics
+{
+    /**
+     * The name under which stages beyond the name limit are counted
+     */
+    public static final String OTHER = "other";
+
+    static final boolean ENDPOINT = Boolean.parseBoolean(Environment.getProperty("JW_METRICS_ENDPOINT", "false"));
+    static final String PATH = Environment.getProperty("JW_METRICS_PATH", "/jwmetrics");
+    private static final boolean LOCAL_ONLY = Boolean.parseBoolean(Environment.getProperty("JW_METRICS_LOCAL_ONLY", "true"));
+    private static final int MAX_NAMES = Integer.parseInt(Environment.getProperty("JW_METRICS_MAX_NAMES", "512"));
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    @Inject
+    private BlockingExecutor blockingExecutor;
+
+    @Inject
+    private RenderedPageCache pageCache;
+
+    @Inject
+    private CssCache cssCache;
+
+    @Inject
+    private UserAgentCache userAgentCache;
+
+    @Inject
+    private AdmissionControl admission;
+
+    @Inject
+    private ResponseWriter responseWriter;
+
+    private final Map<String, Map<String, StageMetrics>> stages = new ConcurrentHashMap<>();
+    private final Map<String, InterceptorChain<?>> interceptorChains = new ConcurrentSkipListMap<>();
+
+    /**
+     * The metrics of one stage for one name
+     */
+    public static final class StageMetrics
+    {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder cancellations = new LongAdder();
+
+        public LatencyHistogram getLatency()
+        {
+            return latency;
+        }
+
+        public long getErrorCount()
+        {
+            return errors.sum();
+        }
+
+        public long getInFlight()
+        {
+            return inFlight.sum();
+        }
+
+        public long getTimeoutCount()
+        {
+            return timeouts.sum();
+        }
+
+        public long getCancelledCount()
+        {
+            return cancellations.sum();
+        }
+    }
+
+    /**
+     * A stage in progress
+     */
+    public static final class Sample
+    {
+        private final StageMetrics metrics;
+        private final long start = System.nanoTime();
+
+        private Sample(StageMetrics metrics)
+        {
+            this.metrics = metrics;
+            metrics.inFlight.increment();
+        }
+
+        /**
+         * Records the stage as finished
+         *
+         * @param failed If the stage failed
+         */
+        public void stop(boolean failed)
+        {
+            metrics.latency.record(System.nanoTime() - start);
+            metrics.inFlight.decrement();
+            if (failed)
+            {
+                metrics.errors.increment();
+            }
+        }
+
+        /**
+         * Records the stage as failed by running out of time
+         */
+        public void timedOut()
+        {
+            metrics.timeouts.increment();
+            stop(true);
+        }
+
+        /**
+         * Records the stage as failed by being cancelled before it finished, such as when the client went away
+         */
+        public void cancelled()
+        {
+            metrics.cancellations.increment();
+            stop(true);
+        }
+    }
+
+    /**
+     * Starts timing a stage
+     *
+     * @param stage The stage, such as page, css, data or event
+     * @param name  The page url, component or event class the stage runs for
+     * @return The running sample, to stop when the stage finishes
+     */
+    public Sample start(String stage, String name)
+    {
+        return new Sample(metricsOf(stage, name));
+    }
+
+    /**
+     * @param stage The stage
+     * @param name  The name within the stage
+     * @return The metrics, created on first use
+     */
+    public StageMetrics metricsOf(String stage, String name)
+    {
+        Map<String, StageMetrics> byName = stages.computeIfAbsent(stage, key -> new ConcurrentHashMap<>());
+        StageMetrics metrics = byName.get(name == null ? OTHER : name);
+        if (metrics != null)
+        {
+            return metrics;
+        }
+        String key = name == null || byName.size() >= MAX_NAMES ? OTHER : name;
+        return byName.computeIfAbsent(key, k -> new StageMetrics());
+    }
+
+    /**
+     * @return Every stage, with the metrics of each name sorted by name
+     */
+    public Map<String, Map<String, StageMetrics>> getStages()
+    {
+        Map<String, Map<String, StageMetrics>> result = new TreeMap<>();
+        stages.forEach((stage, byName) -> result.put(stage, new TreeMap<>(byName)));
+        return result;
+    }
+
+    /**
+     * Exports the interceptor timings of a chain, replacing a chain of the same name
+     *
+     * @param chain The chain
+     */
+    public void addInterceptorChain(InterceptorChain<?> chain)
+    {
+        interceptorChains.put(chain.getName(), chain);
+    }
+
+    /**
+     * @return The exported interceptor chains, by name
+     */
+    public Map<String, InterceptorChain<?>> getInterceptorChains()
+    {
+        return new TreeMap<>(interceptorChains);
+    }
+
+    void configure(Router router)
+    {
+        if (!ENDPOINT)
+        {
+            return;
+        }
+        router.get(PATH)
+              .handler(routingContext -> {
+                  if (LOCAL_ONLY && (routingContext.request()
+                                                   .remoteAddress() == null || !isLoopback(routingContext.request()
+                                                                                                         .remoteAddress()
+                                                                                                         .host())))
+                  {
+                      routingContext.response()
+                                    .setStatusCode(403)
+                                    .end();
+                      return;
+                  }
+                  routingContext.response()
+                                .putHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+                                .end(toPrometheus());
+              });
+    }
+
+    private static boolean isLoopback(String host)
+    {
+        return host != null && (host.startsWith("127.") || "::1".equals(host) || "0:0:0:0:0:0:0:1".equals(host) || "localhost".equals(host));
+    }
+
+    /**
+     * @return Every metric in the Prometheus text exposition format
+     */
+    public String toPrometheus()
+    {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# TYPE jwebmp_stage_seconds summary\n");
+        Map<String, Map<String, StageMetrics>> all = getStages();
+        all.forEach((stage, byName) -> byName.forEach((name, metrics) -> {
+            String labels = "stage=\"" + escape(stage) + "\",name=\"" + escape(name) + "\"";
+            LatencyHistogram latency = metrics.latency;
+            for (double quantile : QUANTILES)
+            {
+                sample(out, "jwebmp_stage_seconds", labels + ",quantile=\"" + quantile + "\"", seconds(latency.getValueAtPercentile(quantile * 100)));
+            }
+            sample(out, "jwebmp_stage_seconds_sum", labels, seconds(latency.getTotalNanos()));
+            sample(out, "jwebmp_stage_seconds_count", labels, latency.getCount());
+        }));
+        out.append("# TYPE jwebmp_stage_errors_total counter\n");
+        all.forEach((stage, byName) -> byName.forEach((name, metrics) ->
+                sample(out, "jwebmp_stage_errors_total", "stage=\"" + escape(stage) + "\",name=\"" + escape(name) + "\"", metrics.getErrorCount())));
+        out.append("# TYPE jwebmp_stage_timeouts_total counter\n");
+        all.forEach((stage, byName) -> byName.forEach((name, metrics) ->
+                sample(out, "jwebmp_stage_timeouts_total", "stage=\"" + escape(stage) + "\",name=\"" + escape(name) + "\"", metrics.getTimeoutCount())));
+        out.append("# TYPE jwebmp_stage_cancelled_total counter\n");
+        all.forEach((stage, byName) -> byName.forEach((name, metrics) ->
+                sample(out, "jwebmp_stage_cancelled_total", "stage=\"" + escape(stage) + "\",name=\"" + escape(name) + "\"", metrics.getCancelledCount())));
+        out.append("# TYPE jwebmp_stage_in_flight gauge\n");
+        all.forEach((stage, byName) -> byName.forEach((name, metrics) ->
+                sample(out, "jwebmp_stage_in_flight", "stage=\"" + escape(stage) + "\",name=\"" + escape(name) + "\"", metrics.getInFlight())));
+
+        out.append("# TYPE jwebmp_blocking_queue_seconds summary\n");
+        for (BlockingExecutor.ExecutionMode mode : BlockingExecutor.ExecutionMode.values())
+        {
+            LatencyStats queueDelay = blockingExecutor.getQueueDelay(mode);
+            String labels = "mode=\"" + mode.name() + "\"";
+            sample(out, "jwebmp_blocking_queue_seconds_sum", labels, seconds(queueDelay.getTotalNanos()));
+            sample(out, "jwebmp_blocking_queue_seconds_count", labels, queueDelay.getCount());
+        }
+        out.append("# TYPE jwebmp_blocking_queue_max_seconds gauge\n");
+        for (BlockingExecutor.ExecutionMode mode : BlockingExecutor.ExecutionMode.values())
+        {
+            sample(out, "jwebmp_blocking_queue_max_seconds", "mode=\"" + mode.name() + "\"", seconds(blockingExecutor.getQueueDelay(mode)
+                                                                                                                      .getMaxNanos()));
+        }
+
+        if (!interceptorChains.isEmpty())
+        {
+            out.append("# TYPE jwebmp_interceptor_seconds summary\n");
+            for (InterceptorChain<?> chain : interceptorChains.values())
+            {
+                chain.getTimings()
+                     .forEach((interceptor, timing) -> {
+                         String labels = "chain=\"" + escape(chain.getName()) + "\",interceptor=\"" + escape(interceptor) + "\"";
+                         sample(out, "jwebmp_interceptor_seconds_sum", labels, seconds(timing.getTotalNanos()));
+                         sample(out, "jwebmp_interceptor_seconds_count", labels, timing.getCount());
+                     });
+            }
+        }
+
+        out.append("# TYPE jwebmp_response_bytes_total counter\n");
+        responseWriter.getBytesByRoute()
+                      .forEach((route, bytes) -> sample(out, "jwebmp_response_bytes_total", "route=\"" + escape(route) + "\"", bytes));
+
+        if (admission.isEnabled())
+        {
+            Map<String, AdmissionControl.Limiter> limiters = admission.getLimiters();
+            out.append("# TYPE jwebmp_admission_limit gauge\n");
+            limiters.forEach((route, limiter) -> sample(out, "jwebmp_admission_limit", "route=\"" + escape(route) + "\"", limiter.getLimit()));
+            out.append("# TYPE jwebmp_admission_in_flight gauge\n");
+            limiters.forEach((route, limiter) -> sample(out, "jwebmp_admission_in_flight", "route=\"" + escape(route) + "\"", limiter.getInFlight()));
+            out.append("# TYPE jwebmp_admission_queued gauge\n");
+            limiters.forEach((route, limiter) -> sample(out, "jwebmp_admission_queued", "route=\"" + escape(route) + "\"", limiter.getQueued()));
+            out.append("# TYPE jwebmp_admission_rejected_total counter\n");
+            limiters.forEach((route, limiter) -> {
+                sample(out, "jwebmp_admission_rejected_total", "route=\"" + escape(route) + "\",reason=\"queue_full\"", limiter.getRejectedCount());
+                sample(out, "jwebmp_admission_rejected_total", "route=\"" + escape(route) + "\",reason=\"queue_timeout\"", limiter.getTimedOutCount());
+            });
+            sample(out, "jwebmp_admission_rejected_total", "route=\"all\",reason=\"session_limit\"", admission.getSessionRejectedCount());
+        }
+
+        out.append("# TYPE jwebmp_cache_hit_ratio gauge\n");
+        sample(out, "jwebmp_cache_hit_ratio", "cache=\"page\"", pageCache.getCache()
+                                                                         .getHitRate());
+        sample(out, "jwebmp_cache_hit_ratio", "cache=\"useragent\"", userAgentCache.getHitRate());
+        out.append("# TYPE jwebmp_cache_entries gauge\n");
+        sample(out, "jwebmp_cache_entries", "cache=\"page\"", pageCache.getCache()
+                                                                       .size());
+        sample(out, "jwebmp_cache_entries", "cache=\"css\"", cssCache.size());
+        sample(out, "jwebmp_cache_entries", "cache=\"useragent\"", userAgentCache.size());
+        return out.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value)
+    {
+        out.append(name)
+           .append('{')
+           .append(labels)
+           .append("} ")
+           .append(value)
+           .append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value)
+    {
+        out.append(name)
+           .append('{')
+           .append(labels)
+           .append("} ")
+           .append(value)
+           .append('\n');
+    }
+
+    private static double seconds(double nanos)
+    {
+        return nanos / 1_000_000_000d;
+    }
+
+    static String escape(String value)
+    {
+        return value.replace("\\", "\\\\")
+                    .replace("\"", "\\\"")
+                    .replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,253 @@
+package com.jwebmp.vertx;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The siteloader script, parsed once into pre-encoded literal segments and the per request placeholder slots between
+ * them.
+ * <p>
+ * Rendering copies the literal bytes and the escaped slot values of a single request straight into a buffer, so no
+ * shared template variables are written and the script is never searched or replaced as a whole.
+ */
+public final class SiteLoaderTemplate
+{
+    /**
+     * The per request placeholders of the siteloader script
+     */
+    public enum Slot
+    {
+        SiteAddress("SITEADDRESSINSERT"),
+        RootAddress("ROOTADDRESSINSERT"),
+        PageClass("PAGECLASS"),
+        UserAgent("%USERAGENT%"),
+        RemoteAddress("%MYIP%"),
+        Referer("%REFERER%");
+
+        private final String placeholder;
+
+        Slot(String placeholder)
+        {
+            this.placeholder = placeholder;
+        }
+
+        public String getPlaceholder()
+        {
+            return placeholder;
+        }
+    }
+
+    /**
+     * Keeps a parsed template in step with a live variable map, parsing it again once a variable is added, removed or
+     * changed
+     */
+    public static final class Source
+    {
+        private record Parsed(Map<String, String> variables, SiteLoaderTemplate template)
+        {
+        }
+
+        private final CharSequence template;
+        private final Map<String, ? extends CharSequence> liveVariables;
+        private final Map<String, ? extends CharSequence> fixedVariables;
+        private volatile Parsed parsed;
+
+        /**
+         * @param template       The script source
+         * @param liveVariables  The variable map that may change at runtime, read on every call to {@link #get()}
+         * @param fixedVariables Variables that never change, taking precedence over the live ones
+         */
+        public Source(CharSequence template, Map<String, ? extends CharSequence> liveVariables, Map<String, ? extends CharSequence> fixedVariables)
+        {
+            this.template = template;
+            this.liveVariables = liveVariables;
+            this.fixedVariables = fixedVariables;
+        }
+
+        /**
+         * @return The template parsed with the current variables
+         */
+        public SiteLoaderTemplate get()
+        {
+            Parsed current = parsed;
+            if (current == null || !matches(current.variables))
+            {
+                Map<String, String> variables = new HashMap<>();
+                liveVariables.forEach((key, value) -> variables.put(key, value == null ? null : value.toString()));
+                Map<String, CharSequence> all = new HashMap<>(variables);
+                all.putAll(fixedVariables);
+                current = new Parsed(variables, parse(template, all));
+                parsed = current;
+            }
+            return current.template;
+        }
+
+        private boolean matches(Map<String, String> variables)
+        {
+            if (variables.size() != liveVariables.size())
+            {
+                return false;
+            }
+            for (Map.Entry<String, ? extends CharSequence> entry : liveVariables.entrySet())
+            {
+                if (!variables.containsKey(entry.getKey()))
+                {
+                    return false;
+                }
+                String known = variables.get(entry.getKey());
+                CharSequence value = entry.getValue();
+                if (value == null ? known != null : known == null || !known.contentEquals(value))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final Slot[] SLOTS = Slot.values();
+
+    private final byte[][] literals;
+    private final Slot[] slots;
+    private final int literalLength;
+
+    private SiteLoaderTemplate(byte[][] literals, Slot[] slots)
+    {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (byte[] literal : literals)
+        {
+            length += literal.length;
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Splits the template on the slot placeholders, substituting any static template variables into the literals
+     *
+     * @param template          The script source
+     * @param templateVariables Static variables applied once at parse time, may be empty
+     * @return The parsed template
+     */
+    public static SiteLoaderTemplate parse(CharSequence template, Map<String, ? extends CharSequence> templateVariables)
+    {
+        String source = template.toString();
+        for (Map.Entry<String, ? extends CharSequence> entry : templateVariables.entrySet())
+        {
+            if (entry.getValue() != null && !isSlot(entry.getKey()))
+            {
+                source = source.replace(entry.getKey(), entry.getValue());
+            }
+        }
+
+        List<byte[]> literals = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        int position = 0;
+        while (true)
+        {
+            int next = -1;
+            Slot nextSlot = null;
+            for (Slot slot : SLOTS)
+            {
+                int index = source.indexOf(slot.placeholder, position);
+                if (index >= 0 && (next < 0 || index < next))
+                {
+                    next = index;
+                    nextSlot = slot;
+                }
+            }
+            if (nextSlot == null)
+            {
+                break;
+            }
+            literals.add(source.substring(position, next)
+                               .getBytes(StandardCharsets.UTF_8));
+            slots.add(nextSlot);
+            position = next + nextSlot.placeholder.length();
+        }
+        literals.add(source.substring(position)
+                           .getBytes(StandardCharsets.UTF_8));
+        return new SiteLoaderTemplate(literals.toArray(new byte[0][]), slots.toArray(new Slot[0]));
+    }
+
+    private static boolean isSlot(String name)
+    {
+        for (Slot slot : SLOTS)
+        {
+            if (slot.placeholder.equals(name))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Renders the script for one request
+     *
+     * @param values The slot values of the request, missing values render as empty strings
+     * @return The encoded script
+     */
+    public Buffer render(Map<Slot, String> values)
+    {
+        Buffer buffer = Buffer.buffer(literalLength + slots.length * 64);
+        for (int i = 0; i < slots.length; i++)
+        {
+            buffer.appendBytes(literals[i]);
+            appendEscaped(buffer, values.get(slots[i]));
+        }
+        buffer.appendBytes(literals[slots.length]);
+        return buffer;
+    }
+
+    /**
+     * Appends a value so it is safe inside a quoted JavaScript string within a script
+     */
+    private static void appendEscaped(Buffer buffer, String value)
+    {
+        if (value == null || value.isEmpty())
+        {
+            return;
+        }
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            String replacement = switch (c)
+            {
+                case '\\' -> "\\\\";
+                case '\'' -> "\\'";
+                case '"' -> "\\\"";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '<' -> "\\u003c";
+                case '>' -> "\\u003e";
+                case '\u2028' -> "\\u2028";
+                case '\u2029' -> "\\u2029";
+                default -> null;
+            };
+            if (replacement != null && escaped == null)
+            {
+                escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+            }
+            if (escaped != null)
+            {
+                if (replacement != null)
+                {
+                    escaped.append(replacement);
+                }
+                else
+                {
+                    escaped.append(c);
+                }
+            }
+        }
+        buffer.appendString(escaped == null ? value : escaped.toString(), StandardCharsets.UTF_8.name());
+    }
+}
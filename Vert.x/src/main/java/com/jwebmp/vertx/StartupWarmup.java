@@ -0,0 +1,187 @@
+package com.jwebmp.vertx;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.guicedee.client.*;
+import com.jwebmp.core.base.ajax.AjaxCall;
+import com.jwebmp.core.base.ajax.AjaxResponse;
+import com.jwebmp.core.base.ajax.HeadersDTO;
+import com.jwebmp.core.base.interfaces.IComponentStyleBase;
+import com.jwebmp.core.htmlbuilder.javascript.events.interfaces.IEvent;
+import com.jwebmp.core.services.IPage;
+import com.jwebmp.vertx.implementations.UserAgentCache;
+import lombok.extern.java.Log;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+
+/**
+ * Renders every page and its CSS and fires every event once before the server takes traffic, so class
+ * initialization, just in time bindings, the user agent database and the first JIT compilations are not paid for by
+ * the first visitors.
+ * <p>
+ * Enabled with JW_WARMUP=true, repeated JW_WARMUP_ITERATIONS times (default 1). Each render runs in its own call scope
+ * with the {@value #WARMUP_PROPERTY} call scope property set and a synthetic AJAX call carrying the JW_WARMUP_USER_AGENT
+ * header, so the scoped ReadableUserAgent resolves as it would for a browser. There is no request, so
+ * {@link RequestContext#isHttp()} is false and a page that needs the request fails its warm up, which is logged and
+ * otherwise ignored. Events are fired with that empty call and awaited for up to JW_WARMUP_EVENT_TIMEOUT_MS (default
+ * 5000); set JW_WARMUP_EVENTS=false to only create them. The time taken by each page is logged and recorded under the
+ * warmup stage of the route metrics.
+ */
+@Log
+@Singleton
+public class StartupWarmup
+{
+    /**
+     * The call scope property marking a warm up render
+     */
+    public static final String WARMUP_PROPERTY = "Warmup";
+
+    private static final boolean ENABLED = Boolean.parseBoolean(Environment.getProperty("JW_WARMUP", "false"));
+    private static final int ITERATIONS = Integer.parseInt(Environment.getProperty("JW_WARMUP_ITERATIONS", "1"));
+    private static final String USER_AGENT = Environment.getProperty("JW_WARMUP_USER_AGENT",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+    private static final boolean FIRE_EVENTS = Boolean.parseBoolean(Environment.getProperty("JW_WARMUP_EVENTS", "true"));
+    private static final Duration EVENT_TIMEOUT = Duration.ofMillis(Long.parseLong(Environment.getProperty("JW_WARMUP_EVENT_TIMEOUT_MS", "5000")));
+
+    @Inject
+    private AjaxEventPipeline ajaxPipeline;
+
+    @Inject
+    private UserAgentCache userAgentCache;
+
+    @Inject
+    private RouteMetrics metrics;
+
+    private final Map<String, Long> pageNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * @return If the warm up runs at startup
+     */
+    public boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+    /**
+     * Warms up the user agent database, every page with its CSS and every event
+     */
+    public void run()
+    {
+        long start = System.nanoTime();
+        userAgentCache.preload()
+                      .join();
+        // A page is reported once however many of its iterations fail
+        Set<String> failedPages = new LinkedHashSet<>();
+        for (int iteration = 0; iteration < Math.max(1, ITERATIONS); iteration++)
+        {
+            for (PageRouteIndex.PageRoute route : PageRouteIndex.getInstance()
+                                                                .getRoutes())
+            {
+                if (!warmPage(route))
+                {
+                    failedPages.add(route.url());
+                }
+            }
+        }
+        int events = 0;
+        for (String eventClass : DispatchRegistry.events()
+                                                 .getClassNames())
+        {
+            if (inScope("event " + eventClass, () -> warmEvent(eventClass)))
+            {
+                events++;
+            }
+        }
+        inScope("ajax response", () -> new AjaxResponse<>().toJson());
+        pageNanos.forEach((url, nanos) -> log.info("Warmed up page " + url + " in " + nanos / 1_000_000 + "ms"));
+        log.info("Warmed up " + (pageNanos.size() - failedPages.size()) + " pages and " + events + " events in " + (System.nanoTime() - start) / 1_000_000 + "ms"
+                + (failedPages.isEmpty() ? "" : ", pages that failed: " + failedPages));
+    }
+
+    private boolean warmPage(PageRouteIndex.PageRoute route)
+    {
+        long start = System.nanoTime();
+        RouteMetrics.Sample sample = metrics.start("warmup", route.url());
+        boolean rendered = inScope("page " + route.url(), () -> IGuiceContext.get(route.key())
+                                                                          .toString(true));
+        rendered &= inScope("css " + route.url(), () -> {
+            IPage<?> page = IGuiceContext.get(route.key());
+            @SuppressWarnings("rawtypes")
+            IComponentStyleBase body = (IComponentStyleBase) page.getBody();
+            return body.renderCss(0);
+        });
+        sample.stop(!rendered);
+        pageNanos.merge(route.url(), System.nanoTime() - start, Math::max);
+        return rendered;
+    }
+
+    private Object warmEvent(String eventClass) throws Exception
+    {
+        IEvent<?, ?> event = ajaxPipeline.processEvent(eventClass);
+        if (!FIRE_EVENTS)
+        {
+            return event;
+        }
+        AjaxCall<?> call = IGuiceContext.get(AjaxCall.class);
+        call.setClassName(eventClass);
+        AjaxResponse<?> response = IGuiceContext.get(AjaxResponse.class);
+        event.fireEvent(call, response)
+             .await()
+             .atMost(EVENT_TIMEOUT);
+        return response.toJson();
+    }
+
+    private boolean inScope(String name, Callable<?> task)
+    {
+        CallScoper scoper = IGuiceContext.get(CallScoper.class);
+        scoper.enter();
+        try
+        {
+            CallScopeProperties callScopeProperties = IGuiceContext.get(CallScopeProperties.class);
+            callScopeProperties.setSource(CallScopeSource.Http);
+            callScopeProperties.getProperties()
+                               .put(WARMUP_PROPERTY, true);
+            seedAjaxCall();
+            task.call();
+            return true;
+        }
+        catch (Throwable e)
+        {
+            log.log(Level.WARNING, "Unable to warm up " + name, e);
+            return false;
+        }
+        finally
+        {
+            scoper.exit();
+        }
+    }
+
+    /**
+     * Gives the scoped call the headers a browser would send, for the user agent and anything else reading them
+     */
+    private static void seedAjaxCall()
+    {
+        AjaxCall<?> call = IGuiceContext.get(AjaxCall.class);
+        HeadersDTO headers = call.getHeaders();
+        if (headers == null)
+        {
+            headers = new HeadersDTO();
+            call.setHeaders(headers);
+        }
+        headers.useragent = USER_AGENT;
+    }
+
+    /**
+     * @return The longest warm up time of each page url in nanoseconds
+     */
+    public Map<String, Long> getPageNanos()
+    {
+        synchronized (pageNanos)
+        {
+            return new LinkedHashMap<>(pageNanos);
+        }
+    }
+}
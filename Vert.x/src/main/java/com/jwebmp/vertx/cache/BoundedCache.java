@@ -0,0 +1,257 @@
+package com.jwebmp.vertx.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A concurrent, size bounded least-recently-used cache with optional per entry expiry.
+ * <p>
+ * Entries are spread over lock striped segments so unrelated keys do not contend, and hit, miss and eviction counts
+ * are kept for monitoring.
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class BoundedCache<K, V>
+{
+    private static final int MAX_STRIPES = 16;
+
+    private final Segment<K, V>[] segments;
+    private final long defaultTtlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache whose entries never expire
+     *
+     * @param maximumSize The maximum number of entries to hold
+     */
+    public BoundedCache(int maximumSize)
+    {
+        this(maximumSize, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a cache.
+     * <p>
+     * The size is split evenly over the segments, so the effective bound is rounded up to a multiple of the stripe count.
+     *
+     * @param maximumSize The maximum number of entries to hold
+     * @param defaultTtl  The default time an entry stays valid, 0 for no expiry
+     * @param unit        The unit of the ttl
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedCache(int maximumSize, long defaultTtl, TimeUnit unit)
+    {
+        if (maximumSize < 1)
+        {
+            throw new IllegalArgumentException("Maximum size must be at least 1");
+        }
+        int stripes = Integer.highestOneBit(Math.min(MAX_STRIPES, maximumSize));
+        int segmentSize = (maximumSize + stripes - 1) / stripes;
+        segments = new Segment[stripes];
+        for (int i = 0; i < stripes; i++)
+        {
+            segments[i] = new Segment<>(segmentSize, evictions);
+        }
+        defaultTtlNanos = unit.toNanos(defaultTtl);
+    }
+
+    private Segment<K, V> segmentFor(Object key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * Returns the cached value if present and not expired
+     *
+     * @param key The key
+     * @return The value or null
+     */
+    public V get(K key)
+    {
+        Segment<K, V> segment = segmentFor(key);
+        Entry<V> entry;
+        synchronized (segment)
+        {
+            entry = segment.get(key);
+            if (entry != null && entry.isExpired(System.nanoTime()))
+            {
+                segment.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null)
+        {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    /**
+     * Returns the cached value, loading and storing it on a miss.
+     * <p>
+     * The loader runs outside of the segment lock, so two threads may load the same key concurrently.
+     *
+     * @param key    The key
+     * @param loader The function to create the value on a miss, may return null to skip caching
+     * @return The cached or loaded value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader)
+    {
+        V value = get(key);
+        if (value == null)
+        {
+            value = loader.apply(key);
+            if (value != null)
+            {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value with the default ttl
+     *
+     * @param key   The key
+     * @param value The value
+     */
+    public void put(K key, V value)
+    {
+        putNanos(key, value, defaultTtlNanos);
+    }
+
+    /**
+     * Stores a value with the given ttl
+     *
+     * @param key   The key
+     * @param value The value
+     * @param ttl   The time the value stays valid, 0 for no expiry
+     * @param unit  The unit of the ttl
+     */
+    public void put(K key, V value, long ttl, TimeUnit unit)
+    {
+        putNanos(key, value, unit.toNanos(ttl));
+    }
+
+    private void putNanos(K key, V value, long ttlNanos)
+    {
+        Entry<V> entry = new Entry<>(value, ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0);
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment)
+        {
+            segment.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes a value
+     *
+     * @param key The key
+     */
+    public void remove(K key)
+    {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment)
+        {
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Removes all values
+     */
+    public void clear()
+    {
+        for (Segment<K, V> segment : segments)
+        {
+            synchronized (segment)
+            {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return The number of entries currently held, including expired entries not yet removed
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Segment<K, V> segment : segments)
+        {
+            synchronized (segment)
+            {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The ratio of hits to lookups, or 0 if there have been no lookups
+     */
+    public double getHitRate()
+    {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    private record Entry<V>(V value, long expiresAt)
+    {
+        boolean isExpired(long now)
+        {
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+
+    private static final class Segment<SK, SV> extends LinkedHashMap<SK, Entry<SV>>
+    {
+        private final int capacity;
+        private final LongAdder evictions;
+
+        private Segment(int capacity, LongAdder evictions)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SK, Entry<SV>> eldest)
+        {
+            if (size() > capacity)
+            {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.jwebmp.vertx.cache;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marks a {@link com.jwebmp.core.annotations.PageConfiguration} page as safe to render once and serve to every request
+ * with the same url, query parameters and variant.
+ * <p>
+ * Only the query parameters listed in {@link #parameters()} are part of the cache key, a request with any other query
+ * parameter is rendered without the cache.
+ * <p>
+ * Cached pages are sent with a strong ETag, and requests whose If-None-Match matches the cached copy are answered
+ * with a 304 without entering a call scope or rendering the page.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface CachedPage
+{
+    /**
+     * @return How long a rendered page is served before it is rendered again
+     */
+    long timeToLive() default 5;
+
+    /**
+     * @return The unit of the time to live
+     */
+    TimeUnit unit() default TimeUnit.MINUTES;
+
+    /**
+     * @return The variant key calculation for the page
+     */
+    Class<? extends PageCacheVariant> variant() default PageCacheVariant.None.class;
+
+    /**
+     * @return The query parameters the page renders from
+     */
+    String[] parameters() default {};
+}
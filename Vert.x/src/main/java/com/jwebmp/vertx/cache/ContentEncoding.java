@@ -0,0 +1,130 @@
+package com.jwebmp.vertx.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The content codings responses can be compressed with, in order of preference
+ */
+public enum ContentEncoding
+{
+    Gzip("gzip"),
+    Deflate("deflate");
+
+    private final String token;
+
+    ContentEncoding(String token)
+    {
+        this.token = token;
+    }
+
+    /**
+     * @return The Content-Encoding header value
+     */
+    public String getToken()
+    {
+        return token;
+    }
+
+    /**
+     * Compresses a body
+     *
+     * @param body  The uncompressed bytes
+     * @param level The compression level, 1 (fastest) to 9 (smallest)
+     * @return The compressed bytes
+     */
+    public byte[] encode(byte[] body, int level)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        Deflater deflater = this == Gzip ? null : new Deflater(level);
+        try (OutputStream stream = this == Gzip ? new LeveledGzipOutputStream(out, level) : new DeflaterOutputStream(out, deflater))
+        {
+            stream.write(body);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            if (deflater != null)
+            {
+                deflater.end();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Chooses the preferred coding an Accept-Encoding header allows
+     *
+     * @param acceptEncoding The header value, may be null
+     * @return The coding, or null if the response must not be compressed
+     */
+    public static ContentEncoding negotiate(String acceptEncoding)
+    {
+        if (acceptEncoding == null || acceptEncoding.isEmpty())
+        {
+            return null;
+        }
+        ContentEncoding best = null;
+        float bestQuality = 0;
+        boolean wildcard = false;
+        float wildcardQuality = 0;
+        for (String part : acceptEncoding.split(","))
+        {
+            String[] parameters = part.split(";");
+            String coding = parameters[0].trim();
+            float quality = 1;
+            for (int i = 1; i < parameters.length; i++)
+            {
+                String parameter = parameters[i].trim();
+                if (parameter.startsWith("q="))
+                {
+                    try
+                    {
+                        quality = Float.parseFloat(parameter.substring(2));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("*"))
+            {
+                wildcard = true;
+                wildcardQuality = quality;
+                continue;
+            }
+            for (ContentEncoding encoding : values())
+            {
+                if (encoding.token.equalsIgnoreCase(coding) && quality > 0
+                        && (quality > bestQuality || (quality == bestQuality && best != null && encoding.ordinal() < best.ordinal())))
+                {
+                    best = encoding;
+                    bestQuality = quality;
+                }
+            }
+        }
+        if (best == null && wildcard && wildcardQuality > 0)
+        {
+            return Gzip;
+        }
+        return best;
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream
+    {
+        private LeveledGzipOutputStream(OutputStream out, int level) throws IOException
+        {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+}
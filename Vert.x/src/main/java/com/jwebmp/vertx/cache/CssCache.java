@@ -0,0 +1,142 @@
+package com.jwebmp.vertx.cache;
+
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import io.vertx.core.http.HttpServerRequest;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.jwebmp.interception.services.StaticStrings.CSS_LOCATION;
+
+/**
+ * Holds the rendered CSS of each page class and variant, rendered once per deployment.
+ * <p>
+ * Every stylesheet is also addressable by its content hash under {@code CSS_LOCATION/<hash>.css}, which never changes
+ * and can be cached by clients indefinitely. Rendered pages link their stylesheet by that url, with the page url in the
+ * {@value #PAGE_PARAMETER} parameter so a stylesheet that is no longer held can be rendered again. The number of
+ * stylesheets held is bounded by JW_CSS_CACHE_MAX_ENTRIES (default 256).
+ */
+@Singleton
+public class CssCache
+{
+    private static final int MAX_ENTRIES = Integer.parseInt(Environment.getProperty("JW_CSS_CACHE_MAX_ENTRIES", "256"));
+    private static final String VERSION_SUFFIX = ".css";
+    private static final Pattern LINK = Pattern.compile("href=([\"'])/?" + Pattern.quote(CSS_LOCATION.startsWith("/") ? CSS_LOCATION.substring(1) : CSS_LOCATION) + "\\1");
+
+    /**
+     * The query parameter naming the url of the page a stylesheet belongs to
+     */
+    public static final String PAGE_PARAMETER = "page";
+
+    private final BoundedCache<String, RenderedContent> byPage = new BoundedCache<>(MAX_ENTRIES);
+    private final BoundedCache<String, RenderedContent> byVersion = new BoundedCache<>(MAX_ENTRIES);
+
+    /**
+     * Builds the cache key for the stylesheet of a page
+     *
+     * @param pageClass The page class
+     * @param policy    The page cache policy supplying the variant, may be null
+     * @param request   The request
+     * @return The cache key
+     */
+    public String keyFor(Class<?> pageClass, RenderedPageCache.Policy policy, HttpServerRequest request)
+    {
+        if (policy == null)
+        {
+            return pageClass.getName();
+        }
+        String variant = policy.variant()
+                               .variantOf(request);
+        return variant == null || variant.isEmpty() ? pageClass.getName() : pageClass.getName() + '\u0000' + variant;
+    }
+
+    /**
+     * @param key The cache key
+     * @return The rendered stylesheet or null
+     */
+    public RenderedContent get(String key)
+    {
+        return byPage.get(key);
+    }
+
+    /**
+     * Encodes and stores a rendered stylesheet
+     *
+     * @param key The cache key
+     * @param css The rendered CSS
+     * @return The stored content
+     */
+    public RenderedContent put(String key, CharSequence css)
+    {
+        RenderedContent content = RenderedContent.of(css);
+        byPage.put(key, content);
+        byVersion.put(content.version(), content);
+        return content;
+    }
+
+    /**
+     * Finds a stylesheet by the last segment of its versioned url
+     *
+     * @param version The content hash, with or without the .css suffix
+     * @return The stylesheet or null if it is not (or no longer) held
+     */
+    public RenderedContent getVersion(String version)
+    {
+        if (version == null)
+        {
+            return null;
+        }
+        if (version.endsWith(VERSION_SUFFIX))
+        {
+            version = version.substring(0, version.length() - VERSION_SUFFIX.length());
+        }
+        return byVersion.get(version);
+    }
+
+    /**
+     * Returns the url a page links its stylesheet by
+     *
+     * @param key     The cache key
+     * @param pageUrl The url of the page
+     * @return The versioned url, or the plain CSS location if the stylesheet has not been rendered yet, naming the page
+     */
+    public String urlFor(String key, String pageUrl)
+    {
+        RenderedContent content = byPage.get(key);
+        String url = content == null ? CSS_LOCATION : CSS_LOCATION + "/" + content.version() + VERSION_SUFFIX;
+        return url + "?" + PAGE_PARAMETER + "=" + URLEncoder.encode(pageUrl, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Points the stylesheet links of a rendered page at a url
+     *
+     * @param html The rendered page
+     * @param url  The url of the stylesheet of the page
+     * @return The page linking the url
+     */
+    public static String link(String html, String url)
+    {
+        Matcher matcher = LINK.matcher(html);
+        return matcher.replaceAll(result -> "href=" + result.group(1) + Matcher.quoteReplacement(url) + result.group(1));
+    }
+
+    /**
+     * @return The number of pages with a rendered stylesheet
+     */
+    public int size()
+    {
+        return byPage.size();
+    }
+
+    /**
+     * Removes every rendered stylesheet
+     */
+    public void clear()
+    {
+        byPage.clear();
+        byVersion.clear();
+    }
+}
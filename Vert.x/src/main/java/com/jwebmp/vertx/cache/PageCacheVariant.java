@@ -0,0 +1,80 @@
+package com.jwebmp.vertx.cache;
+
+import com.google.common.base.Strings;
+import io.vertx.core.http.HttpServerRequest;
+
+import java.util.Locale;
+
+/**
+ * Computes the part of a cached page key that varies between requests to the same url.
+ * <p>
+ * Implementations are resolved through Guice once per page and must be thread safe. The variant is calculated on the
+ * event loop before any rendering happens, so it should only inspect the request.
+ */
+@FunctionalInterface
+public interface PageCacheVariant
+{
+    /**
+     * Returns the variant of the page this request should receive
+     *
+     * @param request The incoming request
+     * @return A short key, requests with an equal key receive the same rendered page
+     */
+    String variantOf(HttpServerRequest request);
+
+    /**
+     * @return The request header the variant is read from, sent in the Vary header so shared caches keep the variants
+     * apart, or null if the variant is not read from a header
+     */
+    default String vary()
+    {
+        return null;
+    }
+
+    /**
+     * Every request receives the same page
+     */
+    class None implements PageCacheVariant
+    {
+        @Override
+        public String variantOf(HttpServerRequest request)
+        {
+            return "";
+        }
+    }
+
+    /**
+     * Pages vary by the primary language of the Accept-Language header
+     */
+    class Language implements PageCacheVariant
+    {
+        @Override
+        public String variantOf(HttpServerRequest request)
+        {
+            String header = request.getHeader("Accept-Language");
+            if (Strings.isNullOrEmpty(header))
+            {
+                return "";
+            }
+            int end = header.length();
+            for (int i = 0; i < header.length(); i++)
+            {
+                char c = header.charAt(i);
+                if (c == ',' || c == ';' || c == '-' || c == '_')
+                {
+                    end = i;
+                    break;
+                }
+            }
+            return header.substring(0, end)
+                         .trim()
+                         .toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        public String vary()
+        {
+            return "Accept-Language";
+        }
+    }
+}
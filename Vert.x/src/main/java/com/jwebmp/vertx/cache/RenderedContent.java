@@ -0,0 +1,162 @@
+package com.jwebmp.vertx.cache;
+
+import com.google.common.base.Strings;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Rendered output held in its encoded form together with a strong entity tag derived from the content.
+ * <p>
+ * Compressed copies are created on first request for each content coding and kept with the content, so cached output
+ * is only ever compressed once.
+ */
+public final class RenderedContent
+{
+    private final byte[] body;
+    private final String etag;
+    private final AtomicReferenceArray<byte[]> compressed = new AtomicReferenceArray<>(ContentEncoding.values().length);
+
+    /**
+     * @param body The UTF-8 encoded content
+     * @param etag The quoted strong entity tag
+     */
+    public RenderedContent(byte[] body, String etag)
+    {
+        this.body = body;
+        this.etag = etag;
+    }
+
+    /**
+     * Encodes the content and calculates its entity tag
+     *
+     * @param content The rendered content
+     * @return The encoded content
+     */
+    public static RenderedContent of(CharSequence content)
+    {
+        byte[] body = content.toString()
+                             .getBytes(StandardCharsets.UTF_8);
+        return new RenderedContent(body, "\"" + hash(body) + "\"");
+    }
+
+    /**
+     * Calculates a short url safe content hash
+     *
+     * @param body The bytes to hash
+     * @return The first 96 bits of the SHA-256 digest, base64 url encoded
+     */
+    public static String hash(byte[] body)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                                         .digest(body);
+            return Base64.getUrlEncoder()
+                         .withoutPadding()
+                         .encodeToString(Arrays.copyOf(digest, 12));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return The UTF-8 encoded content
+     */
+    public byte[] body()
+    {
+        return body;
+    }
+
+    /**
+     * @return The quoted strong entity tag
+     */
+    public String etag()
+    {
+        return etag;
+    }
+
+    /**
+     * Returns the entity tag of a compressed copy, which differs from the uncompressed tag as strong tags must
+     *
+     * @param encoding The content coding, or null for the uncompressed content
+     * @return The quoted entity tag
+     */
+    public String etag(ContentEncoding encoding)
+    {
+        return encoding == null ? etag : "\"" + version() + "-" + encoding.getToken() + "\"";
+    }
+
+    /**
+     * Returns the content in the given coding, compressing it on first use
+     *
+     * @param encoding The content coding, or null for the uncompressed content
+     * @param level    The compression level used if the copy has not been created yet
+     * @return The bytes
+     */
+    public byte[] body(ContentEncoding encoding, int level)
+    {
+        if (encoding == null)
+        {
+            return body;
+        }
+        byte[] encoded = compressed.get(encoding.ordinal());
+        if (encoded == null)
+        {
+            encoded = encoding.encode(body, level);
+            if (!compressed.compareAndSet(encoding.ordinal(), null, encoded))
+            {
+                encoded = compressed.get(encoding.ordinal());
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * @return The entity tag without quotes, usable as a url version segment
+     */
+    public String version()
+    {
+        return etag.substring(1, etag.length() - 1);
+    }
+
+    /**
+     * Checks an If-None-Match header against this content using the weak comparison the header requires.
+     * Tags of compressed copies of the content match as well.
+     *
+     * @param ifNoneMatch The header value, may be null
+     * @return If the client already holds this content
+     */
+    public boolean matches(String ifNoneMatch)
+    {
+        if (Strings.isNullOrEmpty(ifNoneMatch))
+        {
+            return false;
+        }
+        String opaque = version();
+        for (String candidate : ifNoneMatch.split(","))
+        {
+            candidate = candidate.trim();
+            if (candidate.equals("*"))
+            {
+                return true;
+            }
+            if (candidate.startsWith("W/"))
+            {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.length() >= opaque.length() + 2 && candidate.regionMatches(1, opaque, 0, opaque.length())
+                    && (candidate.length() == opaque.length() + 2 || candidate.charAt(opaque.length() + 1) == '-'))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
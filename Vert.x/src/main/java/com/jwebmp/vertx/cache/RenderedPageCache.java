@@ -0,0 +1,172 @@
+package com.jwebmp.vertx.cache;
+
+import com.google.common.base.Strings;
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import com.guicedee.client.IGuiceContext;
+import com.jwebmp.core.services.IPage;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpServerRequest;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the rendered output of {@link CachedPage} pages, keyed by url, the page's query parameters and variant.
+ * <p>
+ * The number of entries is bounded by the JW_PAGE_CACHE_MAX_ENTRIES property (default 1024) and each entry expires
+ * after the time to live of its page.
+ */
+@Singleton
+@SuppressWarnings("rawtypes")
+public class RenderedPageCache
+{
+    private static final int MAX_ENTRIES = Integer.parseInt(Environment.getProperty("JW_PAGE_CACHE_MAX_ENTRIES", "1024"));
+
+    private final BoundedCache<String, RenderedContent> cache = new BoundedCache<>(MAX_ENTRIES);
+    private final Map<Class<?>, Optional<Policy>> policies = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the caching policy of a page, reading its {@link CachedPage} annotation on first use
+     *
+     * @param pageClass The page class
+     * @return The policy, or null if the page is not cached
+     */
+    public Policy getPolicy(Class<? extends IPage> pageClass)
+    {
+        return policies.computeIfAbsent(pageClass, key -> {
+                           CachedPage cachedPage = key.getAnnotation(CachedPage.class);
+                           if (cachedPage == null)
+                           {
+                               return Optional.empty();
+                           }
+                           return Optional.of(new Policy(cachedPage.unit()
+                                                                   .toNanos(cachedPage.timeToLive()),
+                                   IGuiceContext.get(cachedPage.variant()), Set.of(cachedPage.parameters())));
+                       })
+                       .orElse(null);
+    }
+
+    /**
+     * Sets or replaces the caching policy of a page, overriding any annotation
+     *
+     * @param pageClass The page class
+     * @param policy    The policy, or null to disable caching for the page
+     */
+    public void setPolicy(Class<? extends IPage> pageClass, Policy policy)
+    {
+        policies.put(pageClass, Optional.ofNullable(policy));
+        cache.clear();
+    }
+
+    /**
+     * Builds the cache key for a request
+     *
+     * @param url     The page url
+     * @param policy  The page policy
+     * @param request The request
+     * @return The cache key, or null if the request has a query parameter the page is not cached by
+     */
+    public String keyFor(String url, Policy policy, HttpServerRequest request)
+    {
+        StringBuilder key = new StringBuilder(url);
+        if (!Strings.isNullOrEmpty(request.query()))
+        {
+            MultiMap params = request.params();
+            for (String name : params.names())
+            {
+                if (!policy.parameters()
+                           .contains(name))
+                {
+                    return null;
+                }
+            }
+            for (String name : policy.parameters())
+            {
+                List<String> values = params.getAll(name);
+                if (!values.isEmpty())
+                {
+                    key.append('\u0000')
+                       .append(name)
+                       .append('=')
+                       .append(String.join("\u0001", values));
+                }
+            }
+        }
+        String variant = policy.variant()
+                               .variantOf(request);
+        if (variant != null && !variant.isEmpty())
+        {
+            key.append('\u0000')
+               .append(variant);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param key The cache key
+     * @return The cached page or null
+     */
+    public RenderedContent get(String key)
+    {
+        return cache.get(key);
+    }
+
+    /**
+     * Encodes and stores a freshly rendered page
+     *
+     * @param key    The cache key
+     * @param policy The page policy
+     * @param html   The rendered page
+     * @return The stored content
+     */
+    public RenderedContent put(String key, Policy policy, String html)
+    {
+        RenderedContent content = RenderedContent.of(html);
+        cache.put(key, content, policy.timeToLiveNanos(), TimeUnit.NANOSECONDS);
+        return content;
+    }
+
+    /**
+     * Removes every cached page
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    /**
+     * @return The underlying cache, for monitoring
+     */
+    public BoundedCache<String, RenderedContent> getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * How a page is cached
+     *
+     * @param timeToLiveNanos How long a rendered page is served
+     * @param variant         The variant key calculation
+     * @param parameters      The query parameters that are part of the key, in order
+     */
+    public record Policy(long timeToLiveNanos, PageCacheVariant variant, Set<String> parameters)
+    {
+        public Policy
+        {
+            parameters = parameters == null ? Collections.emptySortedSet() : Collections.unmodifiableSortedSet(new TreeSet<>(parameters));
+        }
+
+        /**
+         * A policy for a page rendered without its query parameters
+         *
+         * @param timeToLiveNanos How long a rendered page is served
+         * @param variant         The variant key calculation
+         */
+        public Policy(long timeToLiveNanos, PageCacheVariant variant)
+        {
+            this(timeToLiveNanos, variant, null);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.guicedee.guicedinjection.interfaces.IGuiceModule;
 import com.guicedee.guicedservlets.servlets.services.scopes.CallScope;
 import com.guicedee.guicedservlets.websockets.options.IGuicedWebSocket;
 import com.guicedee.services.jsonrepresentation.IJsonRepresentation;
+import com.jwebmp.vertx.RequestContext;
 import io.vertx.core.json.jackson.DatabindCodec;
 import net.sf.uadetector.ReadableUserAgent;
 
@@ -22,6 +23,7 @@ public class JWebMPVertxBinder extends AbstractModule implements IGuiceModule<JW
     {
         bind(ReadableUserAgent.class).toProvider(ReadableUserAgentProvider.class)
                                      .in(CallScope.class);
+        bind(RequestContext.class).in(CallScope.class);
         //bind(IGuicedWebSocket.class).to(VertXEventBusBridgeIWebSocket.class);
         bind(IGuicedWebSocket.class).to(VertXStompEventBusBridgeIWebSocket.class);
 
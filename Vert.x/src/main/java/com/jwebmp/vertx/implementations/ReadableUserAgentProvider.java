@@ -11,6 +11,7 @@ import com.guicedee.guicedservlets.servlets.services.scopes.CallScope;
 //import com.guicedee.client.CallScopeProperties;
 import com.jwebmp.core.base.ajax.AjaxCall;
 import com.jwebmp.core.base.ajax.HeadersDTO;
+import com.jwebmp.vertx.RequestContext;
 import io.vertx.core.http.HttpServerRequest;
 import net.sf.uadetector.*;
 
@@ -20,44 +21,56 @@ import static com.guicedee.services.jsonrepresentation.json.StaticStrings.STRING
 public class ReadableUserAgentProvider implements Provider<ReadableUserAgent>
 {
     @Inject
-    private UserAgentStringParser userAgentStringParser;
+    private UserAgentCache userAgentCache;
 
     @Inject
     private CallScopeProperties callScopeProperties;
 
+    @Inject
+    private RequestContext requestContext;
+
     @Override
     public ReadableUserAgent get()
     {
         try
         {
-            HttpServerRequest request = (HttpServerRequest) callScopeProperties.getProperties()
-                                                                               .get("HttpServerRequest");
+            HttpServerRequest request = requestContext.isHttp() ? requestContext.getRequest() : (HttpServerRequest) callScopeProperties.getProperties()
+                                                                                                                                      .get("HttpServerRequest");
+            if (request == null)
+            {
+                return fromAjaxCall();
+            }
             String headerInformation = request.getHeader("User-Agent");
             if (!Strings.isNullOrEmpty(headerInformation))
             {
-                ReadableUserAgent agent = userAgentStringParser.parse(headerInformation);
+                ReadableUserAgent agent = userAgentCache.parse(headerInformation);
                 return agent;
             }
             return defaultAgent();
         }
         catch (ProvisionException | OutOfScopeException e)
         {
-            try
-            {
-                AjaxCall<?> call = IGuiceContext.get(AjaxCall.class);
-                HeadersDTO headers = call.getHeaders();
-                if (!Strings.isNullOrEmpty(headers.useragent))
-                {
-                    ReadableUserAgent agent = userAgentStringParser.parse(headers.useragent);
-                    return agent;
-                }
-            }
-            catch (Throwable T)
+            return fromAjaxCall();
+        }
+    }
+
+    private ReadableUserAgent fromAjaxCall()
+    {
+        try
+        {
+            AjaxCall<?> call = IGuiceContext.get(AjaxCall.class);
+            HeadersDTO headers = call.getHeaders();
+            if (!Strings.isNullOrEmpty(headers.useragent))
             {
-                return defaultAgent();
+                ReadableUserAgent agent = userAgentCache.parse(headers.useragent);
+                return agent;
             }
+        }
+        catch (Throwable T)
+        {
             return defaultAgent();
         }
+        return defaultAgent();
     }
 
     public static ReadableUserAgent defaultAgent()
@@ -0,0 +1,262 @@
+package com.jwebmp.vertx.implementations;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import lombok.extern.java.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes messages to the STOMP destinations of groups.
+ * <p>
+ * Messages are published on the event bus as Strings, the payload type consumers of the {@value #DESTINATION_PREFIX}
+ * addresses have always received, and each frame is built once and shared by every subscriber of the destination. With
+ * JW_STOMP_BATCH_WINDOW_MS above zero, messages to the same group are held for up to that many milliseconds, or until
+ * JW_STOMP_BATCH_MAX_MESSAGES are queued, and then published as a single frame. A frame holding more than one message
+ * is a JSON array of the messages and carries the {@value #BATCH_HEADER} header with the message count. Messages that
+ * are not JSON objects or arrays are sent in the array as JSON strings.
+ */
+@Log
+@Singleton
+public class StompBroadcaster
+{
+    /**
+     * The header marking a frame that holds several messages
+     */
+    public static final String BATCH_HEADER = "jw-batch";
+
+    /**
+     * The event bus address prefix of the STOMP destinations
+     */
+    public static final String DESTINATION_PREFIX = "/toStomp/";
+
+    private static final long BATCH_WINDOW_MS = Long.parseLong(Environment.getProperty("JW_STOMP_BATCH_WINDOW_MS", "0"));
+    private static final int BATCH_MAX_MESSAGES = Integer.parseInt(Environment.getProperty("JW_STOMP_BATCH_MAX_MESSAGES", "64"));
+    private static final int MAX_CACHED_DESTINATIONS = 65536;
+
+    @Inject
+    private Vertx vertx;
+
+    private final Map<String, String> destinations = new ConcurrentHashMap<>();
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+
+    /**
+     * Publishes a message to a group, batched when a window is configured
+     *
+     * @param groupName The group
+     * @param message   The message
+     */
+    public void publish(String groupName, String message)
+    {
+        messages.increment();
+        if (BATCH_WINDOW_MS <= 0)
+        {
+            send(destinationOf(groupName), message);
+            return;
+        }
+        List<String> full = null;
+        boolean added = false;
+        while (!added)
+        {
+            Batch batch = batches.computeIfAbsent(groupName, key -> new Batch());
+            synchronized (batch)
+            {
+                // A batch removed by a flush in between is not used, the next one is created in its place
+                if (batch.removed)
+                {
+                    continue;
+                }
+                batch.messages.add(message);
+                added = true;
+                if (batch.messages.size() >= BATCH_MAX_MESSAGES)
+                {
+                    full = batch.drain();
+                }
+                else if (!batch.scheduled)
+                {
+                    batch.scheduled = true;
+                    batch.timer = vertx.setTimer(BATCH_WINDOW_MS, id -> flush(groupName));
+                }
+            }
+        }
+        if (full != null)
+        {
+            send(destinationOf(groupName), full);
+        }
+    }
+
+    /**
+     * Publishes a message to a group straight away, after any messages still held for the group
+     *
+     * @param groupName The group
+     * @param message   The message
+     */
+    public void publishNow(String groupName, String message)
+    {
+        messages.increment();
+        flush(groupName);
+        send(destinationOf(groupName), message);
+    }
+
+    /**
+     * Publishes the messages held for a group, and drops the group's batch until it is published to again
+     *
+     * @param groupName The group
+     */
+    public void flush(String groupName)
+    {
+        Batch batch = batches.get(groupName);
+        if (batch == null)
+        {
+            return;
+        }
+        List<String> held;
+        synchronized (batch)
+        {
+            held = batch.drain();
+            batch.removed = true;
+            batches.remove(groupName, batch);
+        }
+        if (!held.isEmpty())
+        {
+            send(destinationOf(groupName), held);
+        }
+    }
+
+    /**
+     * @param groupName The group
+     * @return The event bus address of the STOMP destination of the group
+     */
+    public String destinationOf(String groupName)
+    {
+        String destination = destinations.get(groupName);
+        if (destination == null)
+        {
+            destination = (DESTINATION_PREFIX + groupName).intern();
+            if (destinations.size() < MAX_CACHED_DESTINATIONS)
+            {
+                destinations.put(groupName, destination);
+            }
+        }
+        return destination;
+    }
+
+    private void send(String destination, List<String> held)
+    {
+        if (held.size() == 1)
+        {
+            send(destination, held.get(0));
+            return;
+        }
+        StringBuilder frame = new StringBuilder();
+        frame.append('[');
+        for (int i = 0; i < held.size(); i++)
+        {
+            if (i > 0)
+            {
+                frame.append(',');
+            }
+            appendMessage(frame, held.get(i));
+        }
+        frame.append(']');
+        frames.increment();
+        vertx.eventBus()
+             .publish(destination, frame.toString(), new DeliveryOptions().addHeader(BATCH_HEADER, String.valueOf(held.size())));
+    }
+
+    private void send(String destination, String message)
+    {
+        frames.increment();
+        vertx.eventBus()
+             .publish(destination, message);
+    }
+
+    static void appendMessage(StringBuilder frame, String message)
+    {
+        String trimmed = message.strip();
+        if (trimmed.startsWith("{") && trimmed.endsWith("}") || trimmed.startsWith("[") && trimmed.endsWith("]"))
+        {
+            frame.append(trimmed);
+            return;
+        }
+        frame.append('"');
+        for (int i = 0; i < message.length(); i++)
+        {
+            char c = message.charAt(i);
+            switch (c)
+            {
+                case '"' -> frame.append("\\\"");
+                case '\\' -> frame.append("\\\\");
+                case '\n' -> frame.append("\\n");
+                case '\r' -> frame.append("\\r");
+                case '\t' -> frame.append("\\t");
+                default ->
+                {
+                    if (c < 0x20)
+                    {
+                        frame.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        frame.append(c);
+                    }
+                }
+            }
+        }
+        frame.append('"');
+    }
+
+    /**
+     * @return The number of messages published
+     */
+    public long getMessageCount()
+    {
+        return messages.sum();
+    }
+
+    /**
+     * @return The number of groups with a batch open
+     */
+    public int getOpenBatchCount()
+    {
+        return batches.size();
+    }
+
+    /**
+     * @return The number of frames sent to the STOMP destinations, lower than the message count when batching
+     */
+    public long getFrameCount()
+    {
+        return frames.sum();
+    }
+
+    private final class Batch
+    {
+        private final List<String> messages = new ArrayList<>();
+        private boolean scheduled;
+        private boolean removed;
+        private long timer;
+
+        private List<String> drain()
+        {
+            if (scheduled)
+            {
+                vertx.cancelTimer(timer);
+                scheduled = false;
+            }
+            List<String> held = new ArrayList<>(messages);
+            messages.clear();
+            return held;
+        }
+    }
+}
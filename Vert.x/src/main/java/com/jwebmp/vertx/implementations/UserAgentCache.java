@@ -0,0 +1,90 @@
+package com.jwebmp.vertx.implementations;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.guicedee.client.Environment;
+import com.jwebmp.vertx.cache.BoundedCache;
+import lombok.extern.java.Log;
+import net.sf.uadetector.ReadableUserAgent;
+import net.sf.uadetector.UserAgentStringParser;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * Caches parsed user agents by their header value.
+ * <p>
+ * Parsed agents are immutable, so one instance is shared by every request with the same header. The cache holds up to
+ * JW_USER_AGENT_CACHE_SIZE entries (default 4096); headers longer than 512 characters are parsed but never cached.
+ * The parser, and with it the uadetector database, is only created on first use unless {@link #preload()} is called.
+ */
+@Log
+@Singleton
+public class UserAgentCache
+{
+    private static final int MAX_ENTRIES = Integer.parseInt(Environment.getProperty("JW_USER_AGENT_CACHE_SIZE", "4096"));
+    private static final int MAX_KEY_LENGTH = 512;
+
+    @Inject
+    private Provider<UserAgentStringParser> userAgentStringParser;
+
+    private final BoundedCache<String, ReadableUserAgent> cache = new BoundedCache<>(MAX_ENTRIES);
+
+    /**
+     * Returns the parsed user agent for a header value
+     *
+     * @param userAgent The User-Agent header
+     * @return The parsed agent
+     */
+    public ReadableUserAgent parse(String userAgent)
+    {
+        if (userAgent.length() > MAX_KEY_LENGTH)
+        {
+            return userAgentStringParser.get()
+                                        .parse(userAgent);
+        }
+        return cache.get(userAgent, key -> userAgentStringParser.get()
+                                                                .parse(key));
+    }
+
+    /**
+     * Creates the parser and loads its database on a background thread
+     *
+     * @return Completes when the parser is ready
+     */
+    public CompletableFuture<Void> preload()
+    {
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            userAgentStringParser.get()
+                                 .parse("");
+            log.config("Loaded the user agent database in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }).whenComplete((result, error) -> {
+            if (error != null)
+            {
+                log.log(Level.WARNING, "Unable to preload the user agent database", error);
+            }
+        });
+    }
+
+    public long getHitCount()
+    {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return cache.getMissCount();
+    }
+
+    public double getHitRate()
+    {
+        return cache.getHitRate();
+    }
+
+    public int size()
+    {
+        return cache.size();
+    }
+}
@@ -0,0 +1,28 @@
+package com.jwebmp.vertx.implementations;
+
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.jwebmp.vertx.cache.PageCacheVariant;
+import io.vertx.core.http.HttpServerRequest;
+
+/**
+ * Cached pages vary by the browser family of the User-Agent header
+ */
+public class UserAgentFamilyVariant implements PageCacheVariant
+{
+    @Inject
+    private UserAgentCache userAgentCache;
+
+    @Override
+    public String variantOf(HttpServerRequest request)
+    {
+        String header = request.getHeader("User-Agent");
+        if (Strings.isNullOrEmpty(header))
+        {
+            return "";
+        }
+        return userAgentCache.parse(header)
+                             .getFamily()
+                             .name();
+    }
+}
@@ -15,36 +15,45 @@ public class VertXEventBusBridgeIWebSocket implements IGuicedWebSocket
     @Inject
     private CallScopeProperties callScopeProperties;
 
+    @Inject
+    private WebSocketGroups groups;
+
     @Override
     public void addToGroup(String groupName) throws Exception
     {
-        //do nothing, it is an event bus address
+        groups.join(groupName);
     }
 
     @Override
     public void removeFromGroup(String groupName) throws Exception
     {
-        //do nothing, it is an event bus address
+        groups.leave(groupName);
     }
 
     @Override
     public void broadcastMessage(String groupName, String message)
     {
-        //send to event bus address
+        //send to event bus address, for the bridge, server side consumers and other nodes
         vertx.eventBus()
              .publish(groupName, message);
+        //and straight to the members of the group known to this node
+        groups.deliver(groupName, message);
     }
 
     @Override
     public void broadcastMessage(String message)
     {
-        //broadcast to myself?
+        //broadcast to myself, on the address of my connection
+        String connection = groups.currentConnection();
+        if (connection != null)
+        {
+            groups.deliverTo(connection, connection, message);
+        }
     }
 
     @Override
     public void broadcastMessageSync(String groupName, String message) throws Exception
     {
-        vertx.eventBus()
-             .publish(groupName, message);
+        broadcastMessage(groupName, message);
     }
 }
@@ -4,52 +4,47 @@ import com.google.inject.Inject;
 import com.guicedee.client.CallScopeProperties;
 import com.guicedee.guicedservlets.servlets.services.scopes.CallScope;
 import com.guicedee.guicedservlets.websockets.options.IGuicedWebSocket;
-import io.vertx.core.Vertx;
 import lombok.extern.log4j.Log4j2;
 
 @Log4j2
 public class VertXStompEventBusBridgeIWebSocket implements IGuicedWebSocket
 {
     @Inject
-    private Vertx vertx;
+    private StompBroadcaster broadcaster;
 
     @Override
     public void addToGroup(String groupName) throws Exception
     {
-        //do nothing, it is an event bus address
+        //do nothing, the STOMP broker tracks the subscribers of each destination, see WebSocketGroups for the bridge binding
     }
 
     @Override
     public void removeFromGroup(String groupName) throws Exception
     {
-        //do nothing, it is an event bus address
+        //do nothing, it is a STOMP destination
     }
 
     @Override
     public void broadcastMessage(String groupName, String message)
     {
-        // Send to event bus address with STOMP destination prefix
-        String stompDestination = "/toStomp/" + groupName;
-        log.trace("Broadcasting message to STOMP destination: {}", stompDestination);
-        vertx.eventBus()
-             .publish(stompDestination, message);
+        // Send to event bus address with STOMP destination prefix, coalesced when a batch window is configured
+        log.trace("Broadcasting message to STOMP group: {}", groupName);
+        broadcaster.publish(groupName, message);
     }
 
     @Override
     public void broadcastMessage(String message)
     {
         // Broadcast to myself?
-        // Not implemented as it's not clear what the destination should be
+        // Not implemented, a STOMP client only receives the destinations it subscribed to
         log.warn("broadcastMessage(String message) called but not implemented in VertXStompEventBusBridgeIWebSocket");
     }
 
     @Override
     public void broadcastMessageSync(String groupName, String message) throws Exception
     {
-        // Send to event bus address with STOMP destination prefix
-        String stompDestination = "/toStomp/" + groupName;
-        log.debug("Broadcasting message synchronously to STOMP destination: {}", stompDestination);
-        vertx.eventBus()
-             .publish(stompDestination, message);
+        // Send to event bus address with STOMP destination prefix, after anything still held for the group
+        log.debug("Broadcasting message synchronously to STOMP group: {}", groupName);
+        broadcaster.publishNow(groupName, message);
     }
 }
\ No newline at end of file
@@ -0,0 +1,423 @@
+package com.jwebmp.vertx.implementations;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.guicedee.client.CallScopeProperties;
+import com.guicedee.client.Environment;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import lombok.extern.java.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Tracks which websocket connections belong to which groups, so a group message can be written straight to its
+ * members.
+ * <p>
+ * The index serves the event bus bridge binding, {@link VertXEventBusBridgeIWebSocket}, where it is an addition to the
+ * event bus publish and never a replacement. Messages are written in the bridge's framing, a
+ * {@code {"type":"rec","address":..,"body":..}} envelope, so bridge clients read them as they read any message on the
+ * address. The STOMP binding does not use the index, its broker already delivers to the subscribers of a destination.
+ * <p>
+ * The connection of a call is the {@link ServerWebSocket} in its call scope properties. A connection is registered on
+ * its first use and no handler is set on the socket, so the handlers of the socket's owner are left alone. The owner
+ * removes a connection from its own close hook through {@link #closed(ServerWebSocket)}, or by publishing the
+ * connection id on the {@value #CLOSED_ADDRESS} event bus address. Connections that close unnoticed are found when a
+ * message to them fails and by a sweep every JW_WEBSOCKET_SWEEP_MS milliseconds (default 30000).
+ * <p>
+ * Both indexes are concurrent maps, which are striped internally. Every membership change is made inside the atomic
+ * update of the connection's key, so a connection being removed can not be added back half way, and members of
+ * different groups are added and removed without contending.
+ */
+@Log
+@Singleton
+public class WebSocketGroups
+{
+    /**
+     * The event bus address announcing closed connections
+     */
+    public static final String CLOSED_ADDRESS = "jwebmp.websocket.closed";
+
+    private static final long SWEEP_INTERVAL_MS = Long.parseLong(Environment.getProperty("JW_WEBSOCKET_SWEEP_MS", "30000"));
+    private static final AtomicLong nextMessageId = new AtomicLong();
+
+    @Inject
+    private Vertx vertx;
+
+    @Inject
+    private Provider<CallScopeProperties> callScopeProperties;
+
+    private final Map<String, Set<String>> membersByGroup = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> groupsByConnection = new ConcurrentHashMap<>();
+    private final Map<String, ServerWebSocket> connections = new ConcurrentHashMap<>();
+    private final Map<ServerWebSocket, String> connectionIds = Collections.synchronizedMap(new WeakHashMap<>());
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder deliveries = new LongAdder();
+
+    private volatile boolean listening;
+
+    /**
+     * Adds the connection of the current call to a group
+     *
+     * @param groupName The group
+     * @return False if the current call has no websocket connection
+     */
+    public boolean join(String groupName)
+    {
+        String connection = currentConnection();
+        if (connection == null)
+        {
+            return false;
+        }
+        add(groupName, connection);
+        return true;
+    }
+
+    /**
+     * Removes the connection of the current call from a group
+     *
+     * @param groupName The group
+     */
+    public void leave(String groupName)
+    {
+        String connection = currentConnection();
+        if (connection != null)
+        {
+            remove(groupName, connection);
+        }
+    }
+
+    void add(String groupName, String connection)
+    {
+        groupsByConnection.compute(connection, (key, groups) -> {
+            Set<String> updated = groups == null ? ConcurrentHashMap.newKeySet() : groups;
+            updated.add(groupName);
+            membersByGroup.compute(groupName, (group, members) -> {
+                Set<String> updatedMembers = members == null ? ConcurrentHashMap.newKeySet() : members;
+                updatedMembers.add(connection);
+                return updatedMembers;
+            });
+            return updated;
+        });
+    }
+
+    void remove(String groupName, String connection)
+    {
+        groupsByConnection.computeIfPresent(connection, (key, groups) -> {
+            groups.remove(groupName);
+            removeMember(groupName, connection);
+            return groups.isEmpty() ? null : groups;
+        });
+    }
+
+    /**
+     * Removes a connection from every group
+     *
+     * @param connection The connection id
+     */
+    public void removeConnection(String connection)
+    {
+        groupsByConnection.computeIfPresent(connection, (key, groups) -> {
+            for (String groupName : groups)
+            {
+                removeMember(groupName, connection);
+            }
+            return null;
+        });
+        ServerWebSocket webSocket = connections.remove(connection);
+        if (webSocket != null)
+        {
+            connectionIds.remove(webSocket);
+        }
+    }
+
+    private void removeMember(String groupName, String connection)
+    {
+        membersByGroup.computeIfPresent(groupName, (key, members) -> {
+            members.remove(connection);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    /**
+     * Sends a message to every connection of a group, on the group's address
+     *
+     * @param groupName The group
+     * @param message   The message
+     * @return The number of connections the message was written to
+     */
+    public int deliver(String groupName, String message)
+    {
+        Set<String> members = membersByGroup.get(groupName);
+        broadcasts.increment();
+        if (members == null)
+        {
+            return 0;
+        }
+        int delivered = 0;
+        for (String connection : members)
+        {
+            if (write(connection, groupName, message))
+            {
+                delivered++;
+            }
+        }
+        deliveries.add(delivered);
+        return delivered;
+    }
+
+    /**
+     * Sends a message to the connection of the current call
+     *
+     * @param address The address the message is framed with
+     * @param message The message
+     * @return False if the current call has no open websocket connection
+     */
+    public boolean deliverToCurrent(String address, String message)
+    {
+        String connection = currentConnection();
+        return connection != null && deliverTo(connection, address, message);
+    }
+
+    /**
+     * Sends a message to one connection
+     *
+     * @param connection The connection id
+     * @param address    The address the message is framed with
+     * @param message    The message
+     * @return False if the connection is not open
+     */
+    public boolean deliverTo(String connection, String address, String message)
+    {
+        return write(connection, address, message);
+    }
+
+    /**
+     * Wraps a message in the event bus bridge envelope of a message received on an address
+     *
+     * @param address The address
+     * @param message The message
+     * @return The frame
+     */
+    public static String frame(String address, String message)
+    {
+        return new JsonObject().put("type", "rec")
+                               .put("address", address)
+                               .put("body", message)
+                               .encode();
+    }
+
+    /**
+     * Wraps a message in a STOMP MESSAGE frame, for sockets that negotiated a STOMP sub protocol.
+     * The subscription is the destination, so a client subscribes to an address with the address as its id.
+     *
+     * @param address The destination
+     * @param message The message
+     * @return The frame
+     */
+    public static String stompFrame(String address, String message)
+    {
+        String destination = address.replace("\\", "\\\\")
+                                    .replace("\n", "\\n")
+                                    .replace(":", "\\c");
+        return "MESSAGE\n" +
+               "destination:" + destination + "\n" +
+               "subscription:" + destination + "\n" +
+               "message-id:" + nextMessageId.incrementAndGet() + "\n" +
+               "content-type:text/plain;charset=UTF-8\n" +
+               "content-length:" + message.getBytes(StandardCharsets.UTF_8).length + "\n" +
+               "\n" +
+               message +
+               "\0";
+    }
+
+    private boolean write(String connection, String address, String message)
+    {
+        ServerWebSocket webSocket = connections.get(connection);
+        if (webSocket == null || webSocket.isClosed())
+        {
+            removeConnection(connection);
+            return false;
+        }
+        String protocol = webSocket.subProtocol();
+        webSocket.writeTextMessage(protocol != null && protocol.contains("stomp") ? stompFrame(address, message) : frame(address, message));
+        return true;
+    }
+
+    /**
+     * @param groupName The group
+     * @return True if any connection is a member of the group
+     */
+    public boolean hasMembers(String groupName)
+    {
+        return membersByGroup.containsKey(groupName);
+    }
+
+    /**
+     * @param groupName The group
+     * @return The number of connections in the group
+     */
+    public int getGroupSize(String groupName)
+    {
+        Set<String> members = membersByGroup.get(groupName);
+        return members == null ? 0 : members.size();
+    }
+
+    /**
+     * @return The number of connections of every group
+     */
+    public Map<String, Integer> getGroupSizes()
+    {
+        Map<String, Integer> sizes = new TreeMap<>();
+        membersByGroup.forEach((groupName, members) -> sizes.put(groupName, members.size()));
+        return sizes;
+    }
+
+    /**
+     * @return The number of connections in at least one group
+     */
+    public int getConnectionCount()
+    {
+        return groupsByConnection.size();
+    }
+
+    /**
+     * @return The number of group messages delivered through the index
+     */
+    public long getBroadcastCount()
+    {
+        return broadcasts.sum();
+    }
+
+    /**
+     * @return The number of connections written to over all group messages
+     */
+    public long getDeliveryCount()
+    {
+        return deliveries.sum();
+    }
+
+    /**
+     * @return The mean number of connections a group message was written to
+     */
+    public double getMeanFanOut()
+    {
+        long count = broadcasts.sum();
+        return count == 0 ? 0 : (double) deliveries.sum() / count;
+    }
+
+    /**
+     * @return The id of the connection of the current call, or null if the current call has no websocket connection
+     */
+    public String currentConnection()
+    {
+        ServerWebSocket webSocket = null;
+        try
+        {
+            for (Object value : callScopeProperties.get()
+                                                   .getProperties()
+                                                   .values())
+            {
+                if (value instanceof ServerWebSocket socket)
+                {
+                    webSocket = socket;
+                    break;
+                }
+            }
+        }
+        catch (Throwable e)
+        {
+            log.log(Level.FINEST, "No call scope to find the websocket connection in", e);
+        }
+        if (webSocket == null)
+        {
+            return null;
+        }
+        listen();
+        return register(webSocket);
+    }
+
+    /**
+     * Removes a socket from every group, for the close hook of the socket's owner
+     *
+     * @param webSocket The socket that closed
+     */
+    public void closed(ServerWebSocket webSocket)
+    {
+        String connection = connectionIds.get(webSocket);
+        if (connection != null)
+        {
+            removeConnection(connection);
+        }
+    }
+
+    /**
+     * Gives a socket its connection id
+     *
+     * @param webSocket The socket
+     * @return The connection id
+     */
+    String register(ServerWebSocket webSocket)
+    {
+        String existing = connectionIds.get(webSocket);
+        if (existing != null)
+        {
+            return existing;
+        }
+        synchronized (connectionIds)
+        {
+            existing = connectionIds.get(webSocket);
+            if (existing != null)
+            {
+                return existing;
+            }
+            String connection = webSocket.textHandlerID() != null ? webSocket.textHandlerID() : "ws-" + nextId.incrementAndGet();
+            connectionIds.put(webSocket, connection);
+            connections.put(connection, webSocket);
+            return connection;
+        }
+    }
+
+    /**
+     * Removes every connection that has closed
+     */
+    public void sweep()
+    {
+        for (Map.Entry<String, ServerWebSocket> entry : connections.entrySet())
+        {
+            if (entry.getValue()
+                     .isClosed())
+            {
+                vertx.eventBus()
+                     .publish(CLOSED_ADDRESS, entry.getKey());
+            }
+        }
+    }
+
+    private void listen()
+    {
+        if (listening)
+        {
+            return;
+        }
+        synchronized (this)
+        {
+            if (!listening)
+            {
+                vertx.eventBus()
+                     .<String>consumer(CLOSED_ADDRESS, message -> removeConnection(message.body()));
+                vertx.setPeriodic(SWEEP_INTERVAL_MS, id -> sweep());
+                listening = true;
+            }
+        }
+    }
+}
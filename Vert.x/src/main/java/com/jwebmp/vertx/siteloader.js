@@ -319,29 +319,7 @@ jw.actions.processCssReferences = function (result) {
 jw.actions.processHtml = function (result, $scope, $compile, $rootScope) {
     if (result.components) {
         $.each(result.components, function (i, item) {
-            var htmlString;
-            var jqHtmlString = $(item.html);
-            if (item.insertType === 'Replace') {
-                $('#' + item.id).replaceWith(jqHtmlString);
-            } else if (item.insertType === 'Append') {
-                $('#' + item.id).after(jqHtmlString);
-            } else if (item.insertType === 'Prepend') {
-                $('#' + item.id).before(jqHtmlString);
-            } else if (item.insertType === 'Insert') {
-                $('#' + item.id).prepend(jqHtmlString);
-            } else if (item.insertType === 'Insert_Last') {
-                $('#' + item.id).append(jqHtmlString);
-            } else if (item.insertType === 'InsertLast') {
-                $('#' + item.id).append(jqHtmlString);
-            } else if (item.insertType === 'Remove') {
-                $('#' + item.id).remove();
-            }
-            var myNewSelf = $('#' + item.id);
-            try {
-                $compile(myNewSelf)($scope);
-            } catch (e) {
-                $compile(myNewSelf)($rootScope);
-            }
+            jw.actions.processComponent(item, $scope, $compile, $rootScope);
         });
         try {
             $scope.$apply();
@@ -350,6 +328,55 @@ jw.actions.processHtml = function (result, $scope, $compile, $rootScope) {
         }
     }
 };
+/**
+ * Places the html of one component and compiles what changed
+ * @param item The component of the response
+ * @returns {undefined}
+ */
+jw.actions.processComponent = function (item, $scope, $compile, $rootScope) {
+    if (item.patch || item.version) {
+        var htmlString = jw.actions.componentHtml(item);
+        if (htmlString === null) {
+            jw.actions.resyncComponent(item, $scope, $compile, $rootScope);
+            return;
+        }
+        if (item.insertType === 'Replace') {
+            var changed = jw.actions.morphComponent(item.id, htmlString);
+            if (changed) {
+                $.each(changed, function (i, node) {
+                    jw.actions.compileNode($(node), $scope, $compile, $rootScope);
+                });
+                return;
+            }
+        }
+        item.html = htmlString;
+    }
+    var jqHtmlString = $(item.html);
+    if (item.insertType === 'Replace') {
+        $('#' + item.id).replaceWith(jqHtmlString);
+    } else if (item.insertType === 'Append') {
+        $('#' + item.id).after(jqHtmlString);
+    } else if (item.insertType === 'Prepend') {
+        $('#' + item.id).before(jqHtmlString);
+    } else if (item.insertType === 'Insert') {
+        $('#' + item.id).prepend(jqHtmlString);
+    } else if (item.insertType === 'Insert_Last') {
+        $('#' + item.id).append(jqHtmlString);
+    } else if (item.insertType === 'InsertLast') {
+        $('#' + item.id).append(jqHtmlString);
+    } else if (item.insertType === 'Remove') {
+        $('#' + item.id).remove();
+    }
+    jw.actions.compileNode($('#' + item.id), $scope, $compile, $rootScope);
+};
+
+jw.actions.compileNode = function (node, $scope, $compile, $rootScope) {
+    try {
+        $compile(node)($scope);
+    } catch (e) {
+        $compile(node)($rootScope);
+    }
+};
 /**
  * Goes through each reaction performing each task
  * @param {type} result
@@ -446,6 +473,400 @@ jw.actions.showDialog = function (title, message, type, options) {
 };
 
 
+jw.ajaxLocation = 'AJAXLOCATION';
+jw.ajaxVersionLocation = 'AJAXVERSIONLOCATION';
+jw.diffEnabled = 'AJAXDIFFENABLED' === 'true';
+jw.componentVersions = {};
+
+/**
+ * Rebuilds the html of a diffed component from its patch, and remembers it as the version the client holds
+ * @param item The component of the response
+ * @returns The html of the component, or null if the patch base is no longer held
+ */
+jw.actions.componentHtml = function (item) {
+    var html = item.html;
+    if (item.patch) {
+        var base = jw.componentVersions[item.id];
+        if (!base || base.version !== item.patch.base) {
+            delete jw.componentVersions[item.id];
+            return null;
+        }
+        html = base.html.substring(0, item.patch.start) + item.patch.insert + base.html.substring(item.patch.end);
+    }
+    if (item.version) {
+        jw.componentVersions[item.id] = {version: item.version, html: html};
+    }
+    return html;
+};
+
+/**
+ * Fetches the full html of a patched component whose base the client no longer holds, reloading the page if the
+ * server no longer has it either, so an update is never lost
+ * @param item The component of the response
+ * @returns {undefined}
+ */
+jw.actions.resyncComponent = function (item, $scope, $compile, $rootScope) {
+    $.ajax({
+        type: 'GET',
+        url: jw.ajaxVersionLocation + '/' + encodeURIComponent(item.version),
+        dataType: 'text'
+    }).done(function (html) {
+        if (jw.componentVersions[item.id]) {
+            // A later response already replaced the component
+            return;
+        }
+        jw.actions.processComponent({id: item.id, insertType: item.insertType, version: item.version, html: html}, $scope, $compile, $rootScope);
+        try {
+            $scope.$apply();
+        } catch (e) {
+            $rootScope.$apply();
+        }
+    }).fail(function () {
+        location.reload();
+    });
+};
+
+/**
+ * @returns The component versions held by the client, as id=version pairs for the X-JW-Versions header
+ */
+jw.actions.heldVersions = function () {
+    var pairs = [];
+    for (var id in jw.componentVersions) {
+        if (!jw.componentVersions.hasOwnProperty(id)) {
+            continue;
+        }
+        if (!document.getElementById(id)) {
+            delete jw.componentVersions[id];
+            continue;
+        }
+        pairs.push(id + '=' + jw.componentVersions[id].version);
+    }
+    return pairs.join(',');
+};
+
+/**
+ * Updates an existing component in place to match new html, touching only the nodes that differ
+ * @param id The component id
+ * @param html The new html of the component
+ * @returns The new nodes to compile, or null if the component must be replaced
+ */
+jw.actions.morphComponent = function (id, html) {
+    var existing = document.getElementById(id);
+    if (!existing) {
+        return null;
+    }
+    var template = document.createElement('template');
+    template.innerHTML = html;
+    var replacement = template.content.firstElementChild;
+    if (!replacement || replacement.nodeName !== existing.nodeName) {
+        return null;
+    }
+    var changed = [];
+    jw.actions.morphNode(existing, replacement, changed);
+    return changed;
+};
+
+/**
+ * @returns true if a node holds markup angular compiles, so it must be compiled again when it changes
+ */
+jw.actions.isCompiled = function (node) {
+    if (node.nodeType === 3) {
+        return node.nodeValue.indexOf('{{') >= 0;
+    }
+    if (node.nodeType !== 1) {
+        return false;
+    }
+    for (var i = 0; i < node.attributes.length; i++) {
+        var attribute = node.attributes[i];
+        if (/^(data-)?ng-/.test(attribute.name) || attribute.value.indexOf('{{') >= 0) {
+            return true;
+        }
+    }
+    return false;
+};
+
+jw.actions.replaceNode = function (from, to, changed) {
+    var fresh = to.cloneNode(true);
+    from.parentNode.replaceChild(fresh, from);
+    changed.push(fresh);
+};
+
+jw.actions.morphNode = function (from, to, changed) {
+    if (from.nodeType !== to.nodeType || from.nodeName !== to.nodeName) {
+        jw.actions.replaceNode(from, to, changed);
+        return;
+    }
+    if (from.nodeType === 3 || from.nodeType === 8) {
+        if (from.nodeValue !== to.nodeValue) {
+            if (jw.actions.isCompiled(from) || jw.actions.isCompiled(to)) {
+                jw.actions.replaceNode(from, to, changed);
+            } else {
+                from.nodeValue = to.nodeValue;
+            }
+        }
+        return;
+    }
+    if (from.nodeType !== 1) {
+        return;
+    }
+    var i, attribute;
+    var attributesChanged = from.attributes.length !== to.attributes.length;
+    for (i = 0; i < to.attributes.length && !attributesChanged; i++) {
+        attribute = to.attributes[i];
+        attributesChanged = from.getAttribute(attribute.name) !== attribute.value;
+    }
+    // Linking an element again would bind its directives twice, so a changed compiled element is swapped for a new one
+    if (attributesChanged && (jw.actions.isCompiled(from) || jw.actions.isCompiled(to))) {
+        jw.actions.replaceNode(from, to, changed);
+        return;
+    }
+    for (i = from.attributes.length - 1; i >= 0; i--) {
+        attribute = from.attributes[i];
+        if (!to.hasAttribute(attribute.name)) {
+            from.removeAttribute(attribute.name);
+        }
+    }
+    for (i = 0; i < to.attributes.length; i++) {
+        attribute = to.attributes[i];
+        if (from.getAttribute(attribute.name) !== attribute.value) {
+            from.setAttribute(attribute.name, attribute.value);
+        }
+    }
+    if (from.nodeName === 'INPUT' || from.nodeName === 'TEXTAREA' || from.nodeName === 'SELECT') {
+        if (from.value !== to.value) {
+            from.value = to.value;
+        }
+    }
+    var fromChildren = from.childNodes;
+    var toChildren = to.childNodes;
+    for (i = 0; i < toChildren.length; i++) {
+        if (i < fromChildren.length) {
+            jw.actions.morphNode(fromChildren[i], toChildren[i], changed);
+        } else {
+            var appended = toChildren[i].cloneNode(true);
+            from.appendChild(appended);
+            changed.push(appended);
+        }
+    }
+    while (fromChildren.length > toChildren.length) {
+        from.removeChild(from.lastChild);
+    }
+};
+
+$.ajaxPrefilter(function (options, originalOptions, xhr) {
+    if (jw.diffEnabled && options.url && options.url.indexOf(jw.ajaxLocation) >= 0) {
+        var versions = jw.actions.heldVersions();
+        if (versions) {
+            xhr.setRequestHeader('X-JW-Versions', versions);
+        }
+    }
+});
+
+jw.ajaxBatchLocation = 'AJAXBATCHLOCATION';
+jw.ajaxBatchSize = parseInt('AJAXBATCHSIZE', 10) || 32;
+jw.ajaxQueue = [];
+jw.routeEvents = 'AJAXROUTEEVENTS' !== 'false';
+jw.ajaxQueueScheduled = false;
+
+/**
+ * Queues an event call to be sent with the other calls of the same frame in one batch request.
+ * Batching is opt in: the generated event scripts post each call on their own, so only scripts that send their calls
+ * through this function or jw.actions.sendEvent are batched. The server runs the calls of a batch one after the other.
+ * @param call The ajax call object
+ * @returns A promise resolved with the response of this call
+ */
+jw.actions.queueEvent = function (call) {
+    var deferred = $.Deferred();
+    jw.ajaxQueue.push({call: call, deferred: deferred});
+    if (!jw.ajaxQueueScheduled) {
+        jw.ajaxQueueScheduled = true;
+        if (window.requestAnimationFrame) {
+            window.requestAnimationFrame(jw.actions.sendQueuedEvents);
+        } else {
+            setTimeout(jw.actions.sendQueuedEvents, 0);
+        }
+    }
+    return deferred.promise();
+};
+
+/**
+ * Sends every queued event call, at most jw.ajaxBatchSize calls per request
+ */
+jw.actions.sendQueuedEvents = function () {
+    var queued = jw.ajaxQueue;
+    jw.ajaxQueue = [];
+    jw.ajaxQueueScheduled = false;
+    for (var start = 0; start < queued.length; start += jw.ajaxBatchSize) {
+        jw.actions.sendBatch(queued.slice(start, start + jw.ajaxBatchSize));
+    }
+};
+
+jw.actions.sendBatch = function (batch) {
+    var calls = [];
+    $.each(batch, function (i, item) {
+        calls.push(item.call);
+    });
+    $.ajax({
+        type: 'POST',
+        url: jw.ajaxBatchLocation,
+        data: JSON.stringify(calls),
+        contentType: 'application/json',
+        dataType: 'json'
+    }).done(function (responses) {
+        $.each(batch, function (i, item) {
+            if (responses && responses[i]) {
+                item.deferred.resolve(responses[i]);
+            } else {
+                item.deferred.reject(responses);
+            }
+        });
+    }).fail(function (xhr, status, error) {
+        $.each(batch, function (i, item) {
+            item.deferred.reject(xhr, status, error);
+        });
+    });
+};
+
+jw.socketLocation = 'WEBSOCKETLOCATION';
+jw.socketTransport = null;
+jw.socketReplyGroup = null;
+jw.socketTimeout = 10000;
+jw.socketReconnect = 5000;
+jw.socketCallId = 0;
+jw.socketCalls = {};
+
+/**
+ * Sends an event call over the websocket when one is open, otherwise with the next HTTP batch.
+ * The site loader opens the socket on jw.socketLocation, a plugin with a socket of its own may set jw.socketTransport
+ * to an object with send(message) and isOpen() instead, and pass every message to jw.actions.receiveSocketReply
+ * @param call The ajax call object
+ * @returns A promise resolved with the response of this call
+ */
+jw.actions.sendEvent = function (call) {
+    var transport = jw.socketTransport;
+    if (!transport || !transport.isOpen() || !jw.socketReplyGroup) {
+        return jw.actions.queueEvent(call);
+    }
+    var id = 'jw' + (++jw.socketCallId);
+    var deferred = $.Deferred();
+    var pending = {deferred: deferred};
+    pending.timer = setTimeout(function () {
+        // The call may still have run on the server, so it is not sent again
+        delete jw.socketCalls[id];
+        deferred.reject(null, 'timeout', 'No reply to the websocket call within ' + jw.socketTimeout + 'ms');
+    }, jw.socketTimeout);
+    jw.socketCalls[id] = pending;
+    try {
+        transport.send(JSON.stringify({
+            action: 'ajax',
+            broadcastGroup: jw.socketReplyGroup,
+            data: {id: id, call: call, versions: jw.diffEnabled ? jw.actions.heldVersions() : null}
+        }));
+    } catch (err) {
+        clearTimeout(pending.timer);
+        delete jw.socketCalls[id];
+        return jw.actions.queueEvent(call);
+    }
+    return deferred.promise();
+};
+
+/**
+ * Resolves the call a websocket reply belongs to
+ * @param message The reply, as a string or an object of the form {id: .., response: ..}, optionally in a bridge {type: 'rec', body: ..} frame
+ */
+jw.actions.receiveSocketReply = function (message) {
+    var reply = typeof message === 'string' ? JSON.parse(message) : message;
+    if (reply && reply.type === 'rec') {
+        reply = typeof reply.body === 'string' ? JSON.parse(reply.body) : reply.body;
+    }
+    var pending = reply ? jw.socketCalls[reply.id] : null;
+    if (pending) {
+        clearTimeout(pending.timer);
+        delete jw.socketCalls[reply.id];
+        pending.deferred.resolve(reply.response);
+    }
+};
+
+/**
+ * Opens the websocket on jw.socketLocation and sends event calls over it, reconnecting when it closes
+ */
+jw.actions.connectSocket = function () {
+    if (!jw.socketLocation || !window.WebSocket || (jw.socketTransport && !jw.socketTransport.own)) {
+        return;
+    }
+    var url = jw.socketLocation;
+    if (url.indexOf('/') === 0) {
+        url = (location.protocol === 'https:' ? 'wss://' : 'ws://') + location.host + url;
+    }
+    var socket = new WebSocket(url);
+    var opened = false;
+    jw.socketReplyGroup = jw.socketReplyGroup || ('jw-' + Math.random().toString(36).substring(2));
+    jw.socketTransport = {
+        own: true,
+        send: function (message) {
+            socket.send(message);
+        },
+        isOpen: function () {
+            return socket.readyState === 1;
+        }
+    };
+    socket.onopen = function () {
+        opened = true;
+    };
+    socket.onmessage = function (event) {
+        try {
+            jw.actions.receiveSocketReply(event.data);
+        } catch (err) {
+            // Not a reply to a call
+        }
+    };
+    socket.onclose = function () {
+        // A socket that never opened has no endpoint to reconnect to, calls go over HTTP
+        if (opened) {
+            setTimeout(jw.actions.connectSocket, jw.socketReconnect);
+        }
+    };
+};
+
+/**
+ * Sends the event calls the generated event scripts post to jw.ajaxLocation through jw.actions.sendEvent,
+ * over the websocket when it is open and batched with the calls of the same frame otherwise
+ */
+$.ajaxTransport('+*', function (options) {
+    var path = options.url ? options.url.split('?')[0].replace(/^[a-z]+:\/\/[^\/]+/i, '') : null;
+    if (!jw.routeEvents || options.type !== 'POST' || path !== jw.ajaxLocation) {
+        return undefined;
+    }
+    var aborted = false;
+    return {
+        send: function (headers, complete) {
+            var call;
+            try {
+                call = typeof options.data === 'string' ? JSON.parse(options.data) : options.data;
+            } catch (err) {
+                complete(400, 'Bad Request', {text: String(err)});
+                return;
+            }
+            jw.actions.sendEvent(call).done(function (response) {
+                if (!aborted) {
+                    complete(200, 'OK', {text: typeof response === 'string' ? response : JSON.stringify(response)});
+                }
+            }).fail(function (xhr, status, error) {
+                if (!aborted) {
+                    complete(xhr && xhr.status ? xhr.status : 500, error || status || 'error');
+                }
+            });
+        },
+        abort: function () {
+            aborted = true;
+        }
+    };
+});
+
+$(function () {
+    jw.actions.connectSocket();
+});
+
 /**
  * Loads up cached url script objects.
  * Used when pulling scripts from the server
@@ -1 +1 @@
-function DeltaTimer(render,interval){var timeout;var lastTime;this.start=start;this.stop=stop;function start(){timeout=setTimeout(loop,0);lastTime=Date.now();return lastTime}function stop(){clearTimeout(timeout);return lastTime}function loop(){var thisTime=Date.now();var deltaTime=thisTime-lastTime;var delay=Math.max(interval-deltaTime,0);timeout=setTimeout(loop,delay);lastTime=thisTime+delay;render(thisTime)}}var jw={isLoading:false,pageLoading:true};window.jw=jw;jw.siteAddress="SITEADDRESSINSERT";var domain;if(jw.siteAddress.indexOf("://")>-1){domain=jw.siteAddress.split("/")[2]}if(jw.siteAddress.indexOf("//")===0){domain=jw.siteAddress.split("/")[2]}else{domain=jw.siteAddress.split("/")[0]}domain=domain.split(":")[0];jw.rootAddress="ROOTADDRESSINSERT";jw.pageClass="PAGECLASS";jw.useragent="%USERAGENT%";jw.myIP="%MYIP%";jw.referer="%REFERER%";jw.sessionid=document.cookie.match(/JSESSIONID=[^;]+/);jw.angularExists=false;jw.angularLoading=false;jw.mobile={};jw.actions={};jw.localstorage={};var jwebswingPermStore={};try{if(Persist){jwebswingPermStore=new Persist.Store("JWebSwingStore");jwebswingPermStore.iterate(function(k,v){jw.localstorage[k]=v})}}catch(e){console.warn("LocalStorage may not work. No persist library added")}jw.sessionstorage={};if(window.sessionStorage){if(window.sessionStorage){for(var i=0;i<window.sessionStorage.length;i++){jw.sessionstorage[window.sessionStorage.key(i)]=window.sessionStorage.getItem(window.sessionStorage.key(i))}}}jw.env={};jw.env.loadescripts=[];jw.env.loadedcss=[];jw.env.controller=null;$("head link[rel$='stylesheet']").each(function(item){jw.env.loadedcss.push($(this).attr("href"))});jw.actions.loadData=function(data,$scope,$parse,$timeout){$.each(data.variables,function(i,item){var the_string=item.variableName;if($parse){var model=$parse(the_string);model.assign($scope,item.variable)}});if($timeout){$timeout(function(){})}};jw.actions.dataVariable=function(name,object){var newVariable={};newVariable.variableName=name;newVariable.variableObject=object;return newVariable};jw.actions.processResponse=function(result,$scope,$parse,$timeout,$compile,$rootScope){jw.actions.processLocalStorage(result);jw.actions.processSessionStorage(result);jw.actions.processHtml(result,$scope,$compile,$rootScope);jw.actions.processCssReferences(result);jw.actions.processJSReferences(result);jw.actions.processCss(result);jw.actions.loadData(result,$scope,$parse,$timeout);jw.actions.processReactions(result)};jw.actions.processLocalStorage=function(result){if(result.localStorage){for(var name in result.localStorage){if(!result.localStorage.hasOwnProperty(name))continue;var value=result.localStorage[name];try{if(Persist){jwebswingPermStore.set(name,value);jwebswingPermStore.save()}}catch(e){console.warn("LocalStorage may not work. No persist library added")}jw.localstorage[name]=value}}};jw.actions.processSessionStorage=function(result){if(result.sessionStorage){for(var name in result.sessionStorage){if(!result.sessionStorage.hasOwnProperty(name))continue;var value=result.sessionStorage[name];jw.sessionstorage[name]=value;window.sessionStorage.setItem(name,value)}}};jw.actions.processCss=function(result){$(".dynamic-css").remove();if(result.css)$("head").append('<style class="dynamic-css">'+result.css+"</style>")};jw.actions.loadNextJSReference=function(array,position,completedCallback){position=position+1;if(position===array.length){completedCallback()}else{jw.actions.synchronizedJSReferencesLoad(array,position,completedCallback)}};jw.actions.synchronizedJSReferencesLoad=function(array,position,completedCallback){var ref=array[position];if(ref){if(ref.endsWith("/jwas")||ref.endsWith("/jwjs")||ref.endsWith("/jwad")||ref.endsWith("/jwdata")||ref.endsWith("/jwajax")){position=position+1;$.notCachedScriptSync(ref).complete(jw.actions.loadNextJSReference(array,position,completedCallback))}else{position=position+1;$.cachedScriptSync(ref).complete(jw.actions.loadNextJSReference(array,position,completedCallback))}}};jw.actions.processJSReferences=function(result){if(result.jsReferences){jw.actions.synchronizedJSReferencesLoad(result.jsReferences,0,function(){jw.actions.processJsScripts(result)})}else{jw.actions.processJsScripts(result)}};jw.actions.processJsScripts=function(result){if(result.jsScripts){$.each(result.jsScripts,function(i,item){jw.actions.loadScript(item)})}if(result.events){$.each(result.events,function(i,item){jw.actions.loadScript(item)})}if(result.features){$.each(result.features,function(i,item){jw.actions.loadScript(item)})}};jw.actions.loadScript=function(item,tries){try{var result=eval(item)}catch(e){console.error("cannot run script -"+item);console.log(e)}};jw.actions.processCssReferences=function(result){$.each(result.cssLinks,function(i,item){var ss=document.styleSheets;var found=false;for(var i=0,max=ss.length;i<max;i++){if(ss[i].href===item){found=true;break}}if(!found){$("head").append('<link rel="stylesheet" type="text/css" href="'+item+'">')}})};jw.actions.processHtml=function(result,$scope,$compile,$rootScope){if(result.components){$.each(result.components,function(i,item){var htmlString;var jqHtmlString=$(item.html);if(item.insertType==="Replace"){$("#"+item.id).replaceWith(jqHtmlString)}else if(item.insertType==="Append"){$("#"+item.id).after(jqHtmlString)}else if(item.insertType==="Prepend"){$("#"+item.id).before(jqHtmlString)}else if(item.insertType==="Insert"){$("#"+item.id).prepend(jqHtmlString)}else if(item.insertType==="Insert_Last"){$("#"+item.id).append(jqHtmlString)}else if(item.insertType==="InsertLast"){$("#"+item.id).append(jqHtmlString)}else if(item.insertType==="Remove"){$("#"+item.id).remove()}var myNewSelf=$("#"+item.id);try{$compile(myNewSelf)($scope)}catch(e){$compile(myNewSelf)($rootScope)}});try{$scope.$apply()}catch(e){$rootScope.$apply()}}};jw.actions.processReactions=function(result){$.each(result.reactions,function(i,item){var title=item.reactionTitle;var message=item.reactionMessage;var type=item.reactionType;var dialogType=item.type;var timeout=item.actionTimeout;var options=item.options;if(type==="DialogDisplay"){jw.actions.showDialog(title,message,dialogType,options)}else if(type==="RedirectHome"){setTimeout("location.reload();",timeout)}else if(type==="RedirectUrl"){var location='window.location.assign("'+message+'")';setTimeout(location,timeout)}})};jw.actions.showDialog=function(title,message,type,options){if(BootstrapDialog){if(options){options.title=title;options.message=message;BootstrapDialog.show(options)}if(type==="Danger")BootstrapDialog.show({title:title,message:message,size:BootstrapDialog.SIZE_EXTRAWIDE,type:BootstrapDialog.TYPE_DANGER});else if(type==="Success")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_SUCCESS});else if(type==="Secondary")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_SECONDARY});else if(type==="Dark")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_DARK});else if(type==="Light")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_LIGHT});else if(type==="Warning")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_WARNING});else if(type==="Primary")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_PRIMARY});else if(type==="Information")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_INFO});else if(type==="Default")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_INFO})}};jQuery.cachedScript=function(url,options){options=$.extend(options||{},{dataType:"script",cache:true,url:url,async:true});return jQuery.ajax(options)};jQuery.cachedScriptSync=function(url,options){options=$.extend(options||{},{dataType:"script",cache:true,url:url,async:false});return jQuery.ajax(options)};jQuery.notCachedScript=function(url,options){options=$.extend(options||{},{dataType:"script",cache:false,url:url,async:true});return jQuery.ajax(options)};jQuery.notCachedScriptSync=function(url,options){options=$.extend(options||{},{dataType:"script",cache:false,url:url,async:false});return jQuery.ajax(options)};function getParametersObject(){try{var search=location.search.substring(1);return dataObject=JSON.parse('{"'+decodeURI(search).replace(/"/g,'\\"').replace(/&/g,'","').replace(/=/g,'":"')+'"}')}catch(err){return{}}}
\ No newline at end of file
+function DeltaTimer(render,interval){var timeout;var lastTime;this.start=start;this.stop=stop;function start(){timeout=setTimeout(loop,0);lastTime=Date.now();return lastTime}function stop(){clearTimeout(timeout);return lastTime}function loop(){var thisTime=Date.now();var deltaTime=thisTime-lastTime;var delay=Math.max(interval-deltaTime,0);timeout=setTimeout(loop,delay);lastTime=thisTime+delay;render(thisTime)}}var jw={isLoading:false,pageLoading:true};window.jw=jw;jw.siteAddress="SITEADDRESSINSERT";var domain;if(jw.siteAddress.indexOf("://")>-1){domain=jw.siteAddress.split("/")[2]}if(jw.siteAddress.indexOf("//")===0){domain=jw.siteAddress.split("/")[2]}else{domain=jw.siteAddress.split("/")[0]}domain=domain.split(":")[0];jw.rootAddress="ROOTADDRESSINSERT";jw.pageClass="PAGECLASS";jw.useragent="%USERAGENT%";jw.myIP="%MYIP%";jw.referer="%REFERER%";jw.sessionid=document.cookie.match(/JSESSIONID=[^;]+/);jw.angularExists=false;jw.angularLoading=false;jw.mobile={};jw.actions={};jw.localstorage={};var jwebswingPermStore={};try{if(Persist){jwebswingPermStore=new Persist.Store("JWebSwingStore");jwebswingPermStore.iterate(function(k,v){jw.localstorage[k]=v})}}catch(e){console.warn("LocalStorage may not work. No persist library added")}jw.sessionstorage={};if(window.sessionStorage){if(window.sessionStorage){for(var i=0;i<window.sessionStorage.length;i++){jw.sessionstorage[window.sessionStorage.key(i)]=window.sessionStorage.getItem(window.sessionStorage.key(i))}}}jw.env={};jw.env.loadescripts=[];jw.env.loadedcss=[];jw.env.controller=null;$("head link[rel$='stylesheet']").each(function(item){jw.env.loadedcss.push($(this).attr("href"))});jw.actions.loadData=function(data,$scope,$parse,$timeout){$.each(data.variables,function(i,item){var the_string=item.variableName;if($parse){var model=$parse(the_string);model.assign($scope,item.variable)}});if($timeout){$timeout(function(){})}};jw.actions.dataVariable=function(name,object){var newVariable={};newVariable.variableName=name;newVariable.variableObject=object;return newVariable};jw.actions.processResponse=function(result,$scope,$parse,$timeout,$compile,$rootScope){jw.actions.processLocalStorage(result);jw.actions.processSessionStorage(result);jw.actions.processHtml(result,$scope,$compile,$rootScope);jw.actions.processCssReferences(result);jw.actions.processJSReferences(result);jw.actions.processCss(result);jw.actions.loadData(result,$scope,$parse,$timeout);jw.actions.processReactions(result)};jw.actions.processLocalStorage=function(result){if(result.localStorage){for(var name in result.localStorage){if(!result.localStorage.hasOwnProperty(name))continue;var value=result.localStorage[name];try{if(Persist){jwebswingPermStore.set(name,value);jwebswingPermStore.save()}}catch(e){console.warn("LocalStorage may not work. No persist library added")}jw.localstorage[name]=value}}};jw.actions.processSessionStorage=function(result){if(result.sessionStorage){for(var name in result.sessionStorage){if(!result.sessionStorage.hasOwnProperty(name))continue;var value=result.sessionStorage[name];jw.sessionstorage[name]=value;window.sessionStorage.setItem(name,value)}}};jw.actions.processCss=function(result){$(".dynamic-css").remove();if(result.css)$("head").append('<style class="dynamic-css">'+result.css+"</style>")};jw.actions.loadNextJSReference=function(array,position,completedCallback){position=position+1;if(position===array.length){completedCallback()}else{jw.actions.synchronizedJSReferencesLoad(array,position,completedCallback)}};jw.actions.synchronizedJSReferencesLoad=function(array,position,completedCallback){var ref=array[position];if(ref){if(ref.endsWith("/jwas")||ref.endsWith("/jwjs")||ref.endsWith("/jwad")||ref.endsWith("/jwdata")||ref.endsWith("/jwajax")){position=position+1;$.notCachedScriptSync(ref).complete(jw.actions.loadNextJSReference(array,position,completedCallback))}else{position=position+1;$.cachedScriptSync(ref).complete(jw.actions.loadNextJSReference(array,position,completedCallback))}}};jw.actions.processJSReferences=function(result){if(result.jsReferences){jw.actions.synchronizedJSReferencesLoad(result.jsReferences,0,function(){jw.actions.processJsScripts(result)})}else{jw.actions.processJsScripts(result)}};jw.actions.processJsScripts=function(result){if(result.jsScripts){$.each(result.jsScripts,function(i,item){jw.actions.loadScript(item)})}if(result.events){$.each(result.events,function(i,item){jw.actions.loadScript(item)})}if(result.features){$.each(result.features,function(i,item){jw.actions.loadScript(item)})}};jw.actions.loadScript=function(item,tries){try{var result=eval(item)}catch(e){console.error("cannot run script -"+item);console.log(e)}};jw.actions.processCssReferences=function(result){$.each(result.cssLinks,function(i,item){var ss=document.styleSheets;var found=false;for(var i=0,max=ss.length;i<max;i++){if(ss[i].href===item){found=true;break}}if(!found){$("head").append('<link rel="stylesheet" type="text/css" href="'+item+'">')}})};jw.actions.processHtml=function(result,$scope,$compile,$rootScope){if(result.components){$.each(result.components,function(i,item){jw.actions.processComponent(item,$scope,$compile,$rootScope)});try{$scope.$apply()}catch(e){$rootScope.$apply()}}};jw.actions.processComponent=function(item,$scope,$compile,$rootScope){if(item.patch||item.version){var htmlString=jw.actions.componentHtml(item);if(htmlString===null){jw.actions.resyncComponent(item,$scope,$compile,$rootScope);return}if(item.insertType==='Replace'){var changed=jw.actions.morphComponent(item.id,htmlString);if(changed){$.each(changed,function(i,node){jw.actions.compileNode($(node),$scope,$compile,$rootScope)});return}}item.html=htmlString}var jqHtmlString=$(item.html);if(item.insertType==='Replace'){$('#'+item.id).replaceWith(jqHtmlString)}else if(item.insertType==='Append'){$('#'+item.id).after(jqHtmlString)}else if(item.insertType==='Prepend'){$('#'+item.id).before(jqHtmlString)}else if(item.insertType==='Insert'){$('#'+item.id).prepend(jqHtmlString)}else if(item.insertType==='Insert_Last'){$('#'+item.id).append(jqHtmlString)}else if(item.insertType==='InsertLast'){$('#'+item.id).append(jqHtmlString)}else if(item.insertType==='Remove'){$('#'+item.id).remove()}jw.actions.compileNode($('#'+item.id),$scope,$compile,$rootScope)};jw.actions.compileNode=function(node,$scope,$compile,$rootScope){try{$compile(node)($scope)}catch(e){$compile(node)($rootScope)}};jw.actions.processReactions=function(result){$.each(result.reactions,function(i,item){var title=item.reactionTitle;var message=item.reactionMessage;var type=item.reactionType;var dialogType=item.type;var timeout=item.actionTimeout;var options=item.options;if(type==="DialogDisplay"){jw.actions.showDialog(title,message,dialogType,options)}else if(type==="RedirectHome"){setTimeout("location.reload();",timeout)}else if(type==="RedirectUrl"){var location='window.location.assign("'+message+'")';setTimeout(location,timeout)}})};jw.actions.showDialog=function(title,message,type,options){if(BootstrapDialog){if(options){options.title=title;options.message=message;BootstrapDialog.show(options)}if(type==="Danger")BootstrapDialog.show({title:title,message:message,size:BootstrapDialog.SIZE_EXTRAWIDE,type:BootstrapDialog.TYPE_DANGER});else if(type==="Success")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_SUCCESS});else if(type==="Secondary")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_SECONDARY});else if(type==="Dark")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_DARK});else if(type==="Light")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_LIGHT});else if(type==="Warning")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_WARNING});else if(type==="Primary")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_PRIMARY});else if(type==="Information")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_INFO});else if(type==="Default")BootstrapDialog.show({title:title,message:message,type:BootstrapDialog.TYPE_INFO})}};jQuery.cachedScript=function(url,options){options=$.extend(options||{},{dataType:"script",cache:true,url:url,async:true});return jQuery.ajax(options)};jQuery.cachedScriptSync=function(url,options){options=$.extend(options||{},{dataType:"script",cache:true,url:url,async:false});return jQuery.ajax(options)};jQuery.notCachedScript=function(url,options){options=$.extend(options||{},{dataType:"script",cache:false,url:url,async:true});return jQuery.ajax(options)};jQuery.notCachedScriptSync=function(url,options){options=$.extend(options||{},{dataType:"script",cache:false,url:url,async:false});return jQuery.ajax(options)};function getParametersObject(){try{var search=location.search.substring(1);return dataObject=JSON.parse('{"'+decodeURI(search).replace(/"/g,'\\"').replace(/&/g,'","').replace(/=/g,'":"')+'"}')}catch(err){return{}}}jw.ajaxLocation='AJAXLOCATION';jw.ajaxVersionLocation='AJAXVERSIONLOCATION';jw.diffEnabled='AJAXDIFFENABLED'==='true';jw.componentVersions={};jw.actions.componentHtml=function(item){var html=item.html;if(item.patch){var base=jw.componentVersions[item.id];if(!base||base.version!==item.patch.base){delete jw.componentVersions[item.id];return null}html=base.html.substring(0,item.patch.start)+item.patch.insert+base.html.substring(item.patch.end)}if(item.version){jw.componentVersions[item.id]={version:item.version,html:html}}return html};jw.actions.resyncComponent=function(item,$scope,$compile,$rootScope){$.ajax({type:'GET',url:jw.ajaxVersionLocation+'/'+encodeURIComponent(item.version),dataType:'text'}).done(function(html){if(jw.componentVersions[item.id]){return}jw.actions.processComponent({id:item.id,insertType:item.insertType,version:item.version,html:html},$scope,$compile,$rootScope);try{$scope.$apply()}catch(e){$rootScope.$apply()}}).fail(function(){location.reload()})};jw.actions.heldVersions=function(){var pairs=[];for(var id in jw.componentVersions){if(!jw.componentVersions.hasOwnProperty(id)){continue}if(!document.getElementById(id)){delete jw.componentVersions[id];continue}pairs.push(id+'='+jw.componentVersions[id].version)}return pairs.join(',')};jw.actions.morphComponent=function(id,html){var existing=document.getElementById(id);if(!existing){return null}var template=document.createElement('template');template.innerHTML=html;var replacement=template.content.firstElementChild;if(!replacement||replacement.nodeName!==existing.nodeName){return null}var changed=[];jw.actions.morphNode(existing,replacement,changed);return changed};jw.actions.isCompiled=function(node){if(node.nodeType===3){return node.nodeValue.indexOf('{{')>=0}if(node.nodeType!==1){return false}for(var i=0;i<node.attributes.length;i++){var attribute=node.attributes[i];if(/^(data-)?ng-/.test(attribute.name)||attribute.value.indexOf('{{')>=0){return true}}return false};jw.actions.replaceNode=function(from,to,changed){var fresh=to.cloneNode(true);from.parentNode.replaceChild(fresh,from);changed.push(fresh)};jw.actions.morphNode=function(from,to,changed){if(from.nodeType!==to.nodeType||from.nodeName!==to.nodeName){jw.actions.replaceNode(from,to,changed);return}if(from.nodeType===3||from.nodeType===8){if(from.nodeValue!==to.nodeValue){if(jw.actions.isCompiled(from)||jw.actions.isCompiled(to)){jw.actions.replaceNode(from,to,changed)}else{from.nodeValue=to.nodeValue}}return}if(from.nodeType!==1){return}var i,attribute;var attributesChanged=from.attributes.length!==to.attributes.length;for(i=0;i<to.attributes.length&&!attributesChanged;i++){attribute=to.attributes[i];attributesChanged=from.getAttribute(attribute.name)!==attribute.value}if(attributesChanged&&(jw.actions.isCompiled(from)||jw.actions.isCompiled(to))){jw.actions.replaceNode(from,to,changed);return}for(i=from.attributes.length-1;i>=0;i--){attribute=from.attributes[i];if(!to.hasAttribute(attribute.name)){from.removeAttribute(attribute.name)}}for(i=0;i<to.attributes.length;i++){attribute=to.attributes[i];if(from.getAttribute(attribute.name)!==attribute.value){from.setAttribute(attribute.name,attribute.value)}}if(from.nodeName==='INPUT'||from.nodeName==='TEXTAREA'||from.nodeName==='SELECT'){if(from.value!==to.value){from.value=to.value}}var fromChildren=from.childNodes;var toChildren=to.childNodes;for(i=0;i<toChildren.length;i++){if(i<fromChildren.length){jw.actions.morphNode(fromChildren[i],toChildren[i],changed)}else{var appended=toChildren[i].cloneNode(true);from.appendChild(appended);changed.push(appended)}}while(fromChildren.length>toChildren.length){from.removeChild(from.lastChild)}};$.ajaxPrefilter(function (options, originalOptions, xhr) {if (jw.diffEnabled && options.url && options.url.indexOf(jw.ajaxLocation) >= 0) {var versions = jw.actions.heldVersions();if (versions) {xhr.setRequestHeader('X-JW-Versions', versions);}}});jw.ajaxBatchLocation='AJAXBATCHLOCATION';jw.ajaxBatchSize=parseInt('AJAXBATCHSIZE',10)||32;jw.ajaxQueue=[];jw.routeEvents='AJAXROUTEEVENTS'!=='false';jw.ajaxQueueScheduled=false;jw.actions.queueEvent=function(call){var deferred=$.Deferred();jw.ajaxQueue.push({call:call,deferred:deferred});if(!jw.ajaxQueueScheduled){jw.ajaxQueueScheduled=true;if(window.requestAnimationFrame){window.requestAnimationFrame(jw.actions.sendQueuedEvents)}else{setTimeout(jw.actions.sendQueuedEvents,0)}}return deferred.promise()};jw.actions.sendQueuedEvents=function(){var queued=jw.ajaxQueue;jw.ajaxQueue=[];jw.ajaxQueueScheduled=false;for(var start=0;start<queued.length;start+=jw.ajaxBatchSize){jw.actions.sendBatch(queued.slice(start,start+jw.ajaxBatchSize))}};jw.actions.sendBatch=function(batch){var calls=[];$.each(batch,function(i,item){calls.push(item.call)});$.ajax({type:'POST',url:jw.ajaxBatchLocation,data:JSON.stringify(calls),contentType:'application/json',dataType:'json'}).done(function(responses){$.each(batch,function(i,item){if(responses&&responses[i]){item.deferred.resolve(responses[i])}else{item.deferred.reject(responses)}})}).fail(function(xhr,status,error){$.each(batch,function(i,item){item.deferred.reject(xhr,status,error)})})};jw.socketLocation='WEBSOCKETLOCATION';jw.socketTransport=null;jw.socketReplyGroup=null;jw.socketTimeout=10000;jw.socketReconnect=5000;jw.socketCallId=0;jw.socketCalls={};jw.actions.sendEvent=function(call){var transport=jw.socketTransport;if(!transport||!transport.isOpen()||!jw.socketReplyGroup){return jw.actions.queueEvent(call)}var id='jw'+(++jw.socketCallId);var deferred=$.Deferred();var pending={deferred:deferred};pending.timer=setTimeout(function(){delete jw.socketCalls[id];deferred.reject(null,'timeout','No reply to the websocket call within '+jw.socketTimeout+'ms')},jw.socketTimeout);jw.socketCalls[id]=pending;try{transport.send(JSON.stringify({action:'ajax',broadcastGroup:jw.socketReplyGroup,data:{id:id,call:call,versions:jw.diffEnabled?jw.actions.heldVersions():null}}))}catch(err){clearTimeout(pending.timer);delete jw.socketCalls[id];return jw.actions.queueEvent(call)}return deferred.promise()};jw.actions.receiveSocketReply=function(message){var reply=typeof message==='string'?JSON.parse(message):message;if(reply&&reply.type==='rec'){reply=typeof reply.body==='string'?JSON.parse(reply.body):reply.body}var pending=reply?jw.socketCalls[reply.id]:null;if(pending){clearTimeout(pending.timer);delete jw.socketCalls[reply.id];pending.deferred.resolve(reply.response)}};jw.actions.connectSocket=function(){if(!jw.socketLocation||!window.WebSocket||(jw.socketTransport&&!jw.socketTransport.own)){return}var url=jw.socketLocation;if(url.indexOf('/')===0){url=(location.protocol==='https:'?'wss://':'ws://')+location.host+url}var socket=new WebSocket(url);var opened=false;jw.socketReplyGroup=jw.socketReplyGroup||('jw-'+Math.random().toString(36).substring(2));jw.socketTransport={own:true,send:function(message){socket.send(message)},isOpen:function(){return socket.readyState===1}};socket.onopen=function(){opened=true};socket.onmessage=function(event){try{jw.actions.receiveSocketReply(event.data)}catch(err){}};socket.onclose=function(){if(opened){setTimeout(jw.actions.connectSocket,jw.socketReconnect)}}};$.ajaxTransport('+*',function(options){var path=options.url?options.url.split('?')[0].replace(/^[a-z]+:\/\/[^\/]+/i,''):null;if(!jw.routeEvents||options.type!=='POST'||path!==jw.ajaxLocation){return undefined}var aborted=false;return{send:function(headers,complete){var call;try{call=typeof options.data==='string'?JSON.parse(options.data):options.data}catch(err){complete(400,'Bad Request',{text:String(err)});return}jw.actions.sendEvent(call).done(function(response){if(!aborted){complete(200,'OK',{text:typeof response==='string'?response:JSON.stringify(response)})}}).fail(function(xhr,status,error){if(!aborted){complete(xhr&&xhr.status?xhr.status:500,error||status||'error')}})},abort:function(){aborted=true}}});$(function(){jw.actions.connectSocket()});
\ No newline at end of file
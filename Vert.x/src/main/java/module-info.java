@@ -1,6 +1,8 @@
 import com.guicedee.guicedinjection.interfaces.IGuiceModule;
+import com.guicedee.guicedservlets.websockets.services.IWebSocketMessageReceiver;
 import com.guicedee.vertx.web.spi.VertxHttpServerConfigurator;
 import com.jwebmp.vertx.JWebMPVertx;
+import com.jwebmp.vertx.JWebMPWebSocket;
 import com.jwebmp.vertx.implementations.JWebMPVertxBinder;
 
 module com.jwebmp.vertx {
@@ -13,9 +15,14 @@ module com.jwebmp.vertx {
     requires static lombok;
     requires org.apache.commons.lang3;
 
+    exports com.jwebmp.vertx;
+    exports com.jwebmp.vertx.cache;
+
     opens com.jwebmp.vertx.implementations to com.google.guice;
     opens com.jwebmp.vertx to com.google.guice;
+    opens com.jwebmp.vertx.cache to com.google.guice;
 
     provides IGuiceModule with JWebMPVertx, JWebMPVertxBinder;
     provides VertxHttpServerConfigurator with JWebMPVertx;
-}
\ No newline at end of file
+    provides IWebSocketMessageReceiver with JWebMPWebSocket;
+}
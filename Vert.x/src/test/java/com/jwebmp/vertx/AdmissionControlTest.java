@@ -0,0 +1,75 @@
+package com.jwebmp.vertx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest
+{
+    private static AdmissionControl.Waiter waiter()
+    {
+        return new AdmissionControl.Waiter(null, null, null, null);
+    }
+
+    @Test
+    void queuesThenRejects()
+    {
+        AdmissionControl.Limiter limiter = new AdmissionControl.Limiter(2, 1, 10, 1, false);
+        assertEquals(Boolean.TRUE, limiter.offer(waiter()));
+        assertEquals(Boolean.TRUE, limiter.offer(waiter()));
+        AdmissionControl.Waiter queued = waiter();
+        assertEquals(Boolean.FALSE, limiter.offer(queued));
+        assertNull(limiter.offer(waiter()));
+        assertEquals(1, limiter.getRejectedCount());
+
+        assertEquals(List.of(queued), limiter.release(1_000_000));
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+        assertTrue(limiter.release(1_000_000)
+                          .isEmpty());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void removesWaiting()
+    {
+        AdmissionControl.Limiter limiter = new AdmissionControl.Limiter(1, 1, 10, 4, false);
+        limiter.offer(waiter());
+        AdmissionControl.Waiter queued = waiter();
+        limiter.offer(queued);
+        assertTrue(limiter.remove(queued));
+        assertFalse(limiter.remove(queued));
+        assertTrue(limiter.release(1_000_000)
+                          .isEmpty());
+    }
+
+    @Test
+    void limitFollowsLatency()
+    {
+        AdmissionControl.Limiter limiter = new AdmissionControl.Limiter(20, 4, 200, 0, true);
+        for (int i = 0; i < 200; i++)
+        {
+            fill(limiter);
+            limiter.release(1_000_000);
+        }
+        int grown = limiter.getLimit();
+        assertTrue(grown > 20, "limit " + grown);
+
+        for (int i = 0; i < 200; i++)
+        {
+            fill(limiter);
+            limiter.release(50_000_000);
+        }
+        assertTrue(limiter.getLimit() < grown / 2, "limit " + limiter.getLimit());
+        assertTrue(limiter.getLimit() >= 4);
+    }
+
+    private static void fill(AdmissionControl.Limiter limiter)
+    {
+        while (Boolean.TRUE.equals(limiter.offer(waiter())))
+        {
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.jwebmp.vertx;
+
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedPageWriterTest
+{
+    private static final String HEAD = "<head><link rel=\"stylesheet\" href=\"/jwcss\"></head>";
+    private static final String BODY = "<body>" + "<div>streamed</div>".repeat(20_000) + "</body>";
+
+    private Vertx vertx;
+    private HttpClient client;
+    private int port;
+    private final Promise<Void> headSeen = Promise.promise();
+
+    @BeforeEach
+    void start() throws Exception
+    {
+        vertx = Vertx.vertx();
+        HttpServer server = vertx.createHttpServer()
+                                 .requestHandler(request -> {
+                                     ChunkedPageWriter writer = new ChunkedPageWriter(request.response(), 1024);
+                                     writer.writeHead("text/html;charset=UTF-8", HEAD);
+                                     // The body is only written once the client has the head, so the head can not arrive with it
+                                     headSeen.future()
+                                             .onSuccess(v -> writer.writeBody(BODY));
+                                 })
+                                 .listen(0)
+                                 .toCompletionStage()
+                                 .toCompletableFuture()
+                                 .get(5, TimeUnit.SECONDS);
+        port = server.actualPort();
+        client = vertx.createHttpClient();
+    }
+
+    @AfterEach
+    void stop() throws Exception
+    {
+        vertx.close()
+             .toCompletionStage()
+             .toCompletableFuture()
+             .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void writesTheHeadBeforeTheBody() throws Exception
+    {
+        List<String> chunks = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> chunked = new CompletableFuture<>();
+        CompletableFuture<Void> ended = new CompletableFuture<>();
+        client.request(HttpMethod.GET, port, "localhost", "/")
+              .compose(request -> request.send())
+              .onSuccess(response -> {
+                  chunked.complete(response.getHeader("Transfer-Encoding"));
+                  response.handler(buffer -> {
+                      chunks.add(buffer.toString());
+                      if (String.join("", chunks)
+                                .contains("</head>"))
+                      {
+                          headSeen.tryComplete();
+                      }
+                  });
+                  response.endHandler(v -> ended.complete(null));
+              })
+              .onFailure(ended::completeExceptionally);
+
+        ended.get(10, TimeUnit.SECONDS);
+        assertEquals("chunked", chunked.get());
+        String page = String.join("", chunks);
+        assertEquals(ChunkedPageWriter.DOCUMENT_START + HEAD + BODY + ChunkedPageWriter.DOCUMENT_END, page);
+        assertFalse(chunks.get(0)
+                          .contains("<body>"), "The head is sent on its own");
+        assertTrue(chunks.size() > 2, "The body is sent in chunks");
+    }
+}
@@ -0,0 +1,30 @@
+package com.jwebmp.vertx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ComponentDifferTest
+{
+    @Test
+    void splice()
+    {
+        String previous = "<table><tr><td>1</td><td>2</td></tr></table>";
+        String current = "<table><tr><td>1</td><td>3</td></tr></table>";
+        ComponentDiffer.Splice splice = ComponentDiffer.Splice.between(previous, current);
+        assertEquals("3", splice.insert());
+        assertEquals(current, previous.substring(0, splice.start()) + splice.insert() + previous.substring(splice.end()));
+
+        splice = ComponentDiffer.Splice.between("aaa", "aaaa");
+        assertEquals("aaaa", "aaa".substring(0, splice.start()) + splice.insert() + "aaa".substring(splice.end()));
+    }
+
+    @Test
+    void parseVersions()
+    {
+        assertEquals(Map.of("a", "1", "b", "2"), ComponentDiffer.parseVersions("a=1, b=2,broken"));
+        assertEquals(Map.of(), ComponentDiffer.parseVersions(null));
+    }
+}
@@ -0,0 +1,22 @@
+package com.jwebmp.vertx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DispatchRegistryTest
+{
+    @Test
+    void rejectsUnknownNames()
+    {
+        DispatchRegistry<Runnable> registry = new DispatchRegistry<>(Runnable.class, List.of("com.example.events.Known", "com.example.events.Outer$Inner"));
+        assertNull(registry.find(null));
+        assertNull(registry.find("java_lang_Thread"));
+        assertNull(registry.find("com.example.events.Unknown"));
+        assertEquals(Set.of("com.example.events.Known", "com.example.events.Outer$Inner"), registry.getClassNames());
+    }
+}
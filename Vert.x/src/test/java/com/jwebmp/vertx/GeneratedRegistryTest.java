@@ -0,0 +1,49 @@
+package com.jwebmp.vertx;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeneratedRegistryTest
+{
+    @Test
+    void mergesRegistries() throws IOException
+    {
+        GeneratedRegistry registry = new GeneratedRegistry();
+        registry.read(new StringReader("""
+                # Generated by the JWebMP registry processor
+                page\t/home\tapp.HomePage
+                event\tapp.Click
+                data\tapp.Chart
+                """));
+        registry.read(new StringReader("""
+                page\t/other\tapp.HomePage
+                page\t/\tlib.RootPage
+                event\tlib.Save$Inner
+                unknown\tlib.Thing
+
+                """));
+        assertEquals(Map.of("app.HomePage", "/home", "lib.RootPage", "/"), registry.getPages());
+        assertEquals(Set.of("app.Click", "lib.Save$Inner"), registry.getEvents());
+        assertEquals(Set.of("app.Chart"), registry.getDataComponents());
+    }
+
+    @Test
+    void coversTheClassPathElementsHoldingARegistry()
+    {
+        GeneratedRegistry registry = new GeneratedRegistry();
+        registry.addLocation("jar:file:/app/lib/pages.jar!/");
+        registry.addLocation("file:/app/target/classes/");
+        assertTrue(registry.covers("file:/app/lib/pages.jar"));
+        assertTrue(registry.covers("file:/app/target/classes"));
+        assertFalse(registry.covers("file:/app/lib/other.jar"));
+        assertEquals("file:/app/lib/pages.jar", GeneratedRegistry.locationOf("jar:file:/app/lib/pages.jar!/META-INF/"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.jwebmp.vertx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InterceptorChainTest
+{
+    interface Step
+    {
+        String name();
+    }
+
+    static class First implements Step
+    {
+        @Override
+        public String name()
+        {
+            return "first";
+        }
+    }
+
+    static class Second implements Step
+    {
+        @Override
+        public String name()
+        {
+            return "second";
+        }
+    }
+
+    @Test
+    void resolvesTheChainOnceAndProvidesItsInterceptorsForEveryCall() throws Exception
+    {
+        List<Class<?>> resolved = new ArrayList<>();
+        AtomicInteger provided = new AtomicInteger();
+        List<String> ran = new ArrayList<>();
+        InterceptorChain<Step> chain = InterceptorChain.of("test", List.of(new Second(), new First()), type -> {
+            resolved.add(type);
+            return () -> {
+                provided.incrementAndGet();
+                return type == First.class ? new First() : new Second();
+            };
+        }, (step, call, response) -> ran.add(step.name()));
+        chain.run(null, null);
+        chain.run(null, null);
+        assertEquals(List.of(First.class, Second.class), resolved);
+        assertEquals(4, provided.get());
+        assertEquals(List.of("first", "second", "first", "second"), ran);
+        assertEquals(List.of(First.class.getName(), Second.class.getName()), List.copyOf(chain.getTimings()
+                                                                                                .keySet()));
+        assertEquals(2, chain.getTimings()
+                             .get(First.class.getName())
+                             .getCount());
+    }
+
+    @Test
+    void stopsAtTheFirstFailureAndTimesIt()
+    {
+        List<String> ran = new ArrayList<>();
+        InterceptorChain<Step> chain = InterceptorChain.of("test", List.of(new Second(), new First()), type -> {
+            Object interceptor = type == First.class ? new First() : new Second();
+            return () -> interceptor;
+        }, (step, call, response) -> {
+            ran.add(step.name());
+            throw new IllegalStateException(step.name());
+        });
+        assertThrows(IllegalStateException.class, () -> chain.run(null, null));
+        assertEquals(List.of("first"), ran);
+        assertEquals(1, chain.getTimings()
+                             .get(First.class.getName())
+                             .getCount());
+        assertEquals(0, chain.getTimings()
+                             .get(Second.class.getName())
+                             .getCount());
+    }
+}
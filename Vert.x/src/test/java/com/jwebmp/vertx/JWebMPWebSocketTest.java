@@ -0,0 +1,140 @@
+package com.jwebmp.vertx;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import com.guicedee.client.CallScopeProperties;
+import com.guicedee.guicedservlets.servlets.services.scopes.CallScope;
+import com.guicedee.guicedservlets.websockets.options.WebSocketMessageReceiver;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JWebMPWebSocketTest
+{
+    /**
+     * Answers every call with the number of calls its scope has seen, failing if a call would enter a scope of its own
+     */
+    static final class RecordingPipeline extends AjaxEventPipeline
+    {
+        private final CallScopeProperties scope;
+        final List<Object> messages = new ArrayList<>();
+
+        RecordingPipeline(CallScopeProperties scope)
+        {
+            this.scope = scope;
+        }
+
+        @Override
+        public Uni<String> fire(String requestId, Runnable scopeSetup, AjaxCallSource source)
+        {
+            throw new AssertionError("A websocket call entered a call scope of its own");
+        }
+
+        @Override
+        public Uni<String> fireInScope(String requestId, Runnable scopeSetup, AjaxCallSource source)
+        {
+            scopeSetup.run();
+            messages.add(scope.getProperties()
+                              .get("WebSocketMessage"));
+            int calls = (int) scope.getProperties()
+                                   .merge("calls", 1, (a, b) -> (int) a + (int) b);
+            return Uni.createFrom()
+                      .item("{\"calls\":" + calls + "}");
+        }
+    }
+
+    private final Vertx vertx = Vertx.vertx();
+    private final CallScopeProperties scope = new CallScopeProperties();
+    private final RecordingPipeline pipeline = new RecordingPipeline(scope);
+    private final List<String> written = new ArrayList<>();
+
+    @AfterEach
+    void stop()
+    {
+        vertx.close();
+    }
+
+    private JWebMPWebSocket receiver()
+    {
+        ServerWebSocket socket = (ServerWebSocket) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ServerWebSocket.class},
+                (proxy, method, args) -> switch (method.getName())
+                {
+                    case "textHandlerID" -> "socket-1";
+                    case "isClosed" -> false;
+                    case "subProtocol" -> null;
+                    case "writeTextMessage" ->
+                    {
+                        written.add((String) args[0]);
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "socket-1";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        scope.getProperties()
+             .put("ServerWebSocket", socket);
+        Injector injector = Guice.createInjector(binder -> {
+            binder.bindScope(CallScope.class, Scopes.NO_SCOPE);
+            binder.bind(Vertx.class)
+                  .toInstance(vertx);
+            binder.bind(CallScopeProperties.class)
+                  .toInstance(scope);
+            binder.bind(AjaxEventPipeline.class)
+                  .toProvider(() -> pipeline);
+        });
+        return injector.getInstance(JWebMPWebSocket.class);
+    }
+
+    private static WebSocketMessageReceiver<?> message(String id)
+    {
+        WebSocketMessageReceiver<?> message = new WebSocketMessageReceiver<>();
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", id);
+        data.put("call", "{}");
+        message.setData(data);
+        return message;
+    }
+
+    @Test
+    void runsMessagesOfOneSocketInItsReceiveScope()
+    {
+        JWebMPWebSocket receiver = receiver();
+        WebSocketMessageReceiver<?> first = message("jw1");
+        WebSocketMessageReceiver<?> second = message("jw2");
+
+        receiver.receiveMessage(first)
+                .await()
+                .indefinitely();
+        receiver.receiveMessage(second)
+                .await()
+                .indefinitely();
+
+        assertEquals(List.of(first, second), pipeline.messages);
+        assertEquals(2, scope.getProperties()
+                             .get("calls"), "What a call sets in scope is kept");
+        assertEquals(2, written.size());
+        for (int i = 0; i < written.size(); i++)
+        {
+            JsonObject frame = new JsonObject(written.get(i));
+            assertEquals("rec", frame.getString("type"));
+            assertEquals("socket-1", frame.getString("address"));
+            JsonObject reply = new JsonObject(frame.getString("body"));
+            assertEquals("jw" + (i + 1), reply.getString("id"));
+            assertEquals(i + 1, reply.getJsonObject("response")
+                                     .getInteger("calls"));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.jwebmp.vertx;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest
+{
+    @Test
+    void bucketsCoverEveryValue()
+    {
+        for (long value = 0; value < 1L << 40; value = value < 1000 ? value + 1 : value + value / 37)
+        {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.lowestValueAt(index) <= value && value <= LatencyHistogram.highestValueAt(index), "value " + value);
+        }
+    }
+
+    @Test
+    void percentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++)
+        {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_000, histogram.getValueAtPercentile(50), 500_000 * 0.04);
+        assertEquals(990_000, histogram.getValueAtPercentile(99), 990_000 * 0.04);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+}
@@ -0,0 +1,46 @@
+package com.jwebmp.vertx;
+
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import com.jwebmp.core.Page;
+import com.jwebmp.core.services.IPage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageRouteIndexTest
+{
+    private static PageRouteIndex.PageRoute route(String url)
+    {
+        return new PageRouteIndex.PageRoute(url, Page.class, Key.get(IPage.class, Names.named(url)));
+    }
+
+    @Test
+    void normalize()
+    {
+        assertEquals("/", PageRouteIndex.normalize(null));
+        assertEquals("/", PageRouteIndex.normalize(""));
+        assertEquals("/", PageRouteIndex.normalize("/"));
+        assertEquals("/", PageRouteIndex.normalize("///"));
+        assertEquals("/home", PageRouteIndex.normalize("/home/"));
+        assertEquals("/home/sub", PageRouteIndex.normalize("/home/sub"));
+    }
+
+    @Test
+    void match()
+    {
+        PageRouteIndex index = new PageRouteIndex(List.of(route("/"), route("/home"), route("/home/"), route("/admin/users")));
+        assertEquals(3, index.getRoutes()
+                             .size());
+        assertEquals("/", index.match("/")
+                               .url());
+        assertEquals("/home", index.match("/home/")
+                                   .url());
+        assertEquals("/admin/users", index.match("/admin/users")
+                                          .url());
+        assertNull(index.match("/admin"));
+        assertNull(index.match("/home/other"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.jwebmp.vertx;
+
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestContextTest
+{
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object... answers)
+    {
+        return (T) Proxy.newProxyInstance(RequestContextTest.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            for (int i = 0; i < answers.length; i += 2)
+            {
+                if (method.getName()
+                          .equals(answers[i]))
+                {
+                    return answers[i + 1];
+                }
+            }
+            return switch (method.getName())
+            {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> type.getSimpleName();
+                default -> throw new UnsupportedOperationException(method.getName());
+            };
+        });
+    }
+
+    @Test
+    void emptyOutsideARequest()
+    {
+        RequestContext context = new RequestContext();
+        assertFalse(context.isHttp());
+        assertNull(context.getRoutingContext());
+        assertNull(context.getRequest());
+        assertNull(context.getResponse());
+        assertEquals(-1, context.getStreamId());
+    }
+
+    @Test
+    void populatedFromTheRoutingContext()
+    {
+        HttpServerRequest request = proxy(HttpServerRequest.class, "streamId", 3);
+        HttpServerResponse response = proxy(HttpServerResponse.class);
+        RoutingContext routingContext = proxy(RoutingContext.class, "request", request, "response", response);
+
+        RequestContext context = new RequestContext().set(routingContext);
+        assertTrue(context.isHttp());
+        assertSame(routingContext, context.getRoutingContext());
+        assertSame(request, context.getRequest());
+        assertSame(response, context.getResponse());
+        assertEquals(3, context.getStreamId());
+    }
+}
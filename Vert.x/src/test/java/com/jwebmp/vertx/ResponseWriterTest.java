@@ -0,0 +1,146 @@
+package com.jwebmp.vertx;
+
+import com.google.inject.Guice;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseWriterTest
+{
+    private static final String LARGE = "{\"value\":\"large ajax response\"}\n".repeat(4096);
+
+    private Vertx vertx;
+    private WebClient client;
+    private int port;
+    private ResponseWriter writer;
+    private final CompletableFuture<Boolean> ended = new CompletableFuture<>();
+
+    @BeforeEach
+    void start() throws Exception
+    {
+        vertx = Vertx.vertx();
+        writer = Guice.createInjector(binder -> binder.bind(Vertx.class)
+                                                      .toInstance(vertx))
+                      .getInstance(ResponseWriter.class);
+        Router router = Router.router(vertx);
+        router.get("/ok")
+              .handler(routingContext -> {
+                  writer.send(routingContext, "ok", "text/plain", Buffer.buffer("hello"));
+                  // A second send on an ended response is ignored
+                  writer.send(routingContext, "ok", "text/plain", Buffer.buffer("again"));
+                  ended.complete(routingContext.response()
+                                               .ended());
+              });
+        router.get("/fail")
+              .handler(routingContext -> {
+                  writer.fail(routingContext, new IllegalStateException("render failed"));
+                  ended.complete(routingContext.response()
+                                               .ended());
+              });
+        router.get("/partial")
+              .handler(routingContext -> {
+                  routingContext.response()
+                                .closeHandler(v -> ended.complete(true))
+                                .setChunked(true)
+                                .write("part");
+                  writer.fail(routingContext, new IllegalStateException("render failed"));
+              });
+        router.get("/large")
+              .handler(routingContext -> writer.send(routingContext, "large", "text/plain", LARGE));
+        HttpServer server = vertx.createHttpServer()
+                                 .requestHandler(router)
+                                 .listen(0)
+                                 .toCompletionStage()
+                                 .toCompletableFuture()
+                                 .get(5, TimeUnit.SECONDS);
+        port = server.actualPort();
+        client = WebClient.create(vertx, new WebClientOptions().setDecompressionSupported(false));
+    }
+
+    @AfterEach
+    void stop() throws Exception
+    {
+        vertx.close()
+             .toCompletionStage()
+             .toCompletableFuture()
+             .get(5, TimeUnit.SECONDS);
+    }
+
+    private HttpResponse<Buffer> get(String path) throws Exception
+    {
+        return client.get(port, "localhost", path)
+                     .send()
+                     .toCompletionStage()
+                     .toCompletableFuture()
+                     .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void sendsTheBodyWithItsLength() throws Exception
+    {
+        HttpResponse<Buffer> response = get("/ok");
+        assertEquals(200, response.statusCode());
+        assertEquals("5", response.getHeader("Content-Length"));
+        assertEquals("text/plain", response.getHeader("Content-Type"));
+        assertEquals("hello", response.bodyAsString());
+        assertTrue(ended.get(5, TimeUnit.SECONDS));
+        assertEquals(Map.of("ok", 5L), writer.getBytesByRoute());
+    }
+
+    @Test
+    void compressesLargeBodiesOffTheEventLoop() throws Exception
+    {
+        HttpResponse<Buffer> response = client.get(port, "localhost", "/large")
+                                              .putHeader("Accept-Encoding", "gzip")
+                                              .send()
+                                              .toCompletionStage()
+                                              .toCompletableFuture()
+                                              .get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals(String.valueOf(response.body()
+                                            .length()), response.getHeader("Content-Length"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()
+                                                                                       .getBytes())))
+        {
+            assertEquals(LARGE, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void failsWith500BeforeTheHeadIsWritten() throws Exception
+    {
+        HttpResponse<Buffer> response = get("/fail");
+        assertEquals(500, response.statusCode());
+        assertEquals("0", response.getHeader("Content-Length"));
+        assertTrue(ended.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void resetsOnceTheHeadIsWritten() throws Exception
+    {
+        CompletableFuture<Boolean> failed = client.get(port, "localhost", "/partial")
+                                                  .send()
+                                                  .toCompletionStage()
+                                                  .toCompletableFuture()
+                                                  .handle((response, failure) -> failure != null || response.statusCode() != 200);
+        assertTrue(failed.get(5, TimeUnit.SECONDS));
+        assertTrue(ended.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,49 @@
+package com.jwebmp.vertx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SiteLoaderTemplateTest
+{
+    @Test
+    void render()
+    {
+        SiteLoaderTemplate template = SiteLoaderTemplate.parse("a='SITEADDRESSINSERT';b='%USERAGENT%';c='PAGECLASS';d='SITEADDRESSINSERT';e='VERSION';",
+                Map.of("VERSION", "1.0"));
+
+        Map<SiteLoaderTemplate.Slot, String> values = new EnumMap<>(SiteLoaderTemplate.Slot.class);
+        values.put(SiteLoaderTemplate.Slot.SiteAddress, "localhost");
+        values.put(SiteLoaderTemplate.Slot.UserAgent, "it's </script>");
+
+        assertEquals("a='localhost';b='it\\'s \\u003c/script\\u003e';c='';d='localhost';e='1.0';", template.render(values)
+                                                                                                                .toString());
+    }
+
+    @Test
+    void sourceFollowsTheLiveVariables()
+    {
+        Map<String, CharSequence> live = new HashMap<>();
+        live.put("VERSION", "1.0");
+        SiteLoaderTemplate.Source source = new SiteLoaderTemplate.Source("v='VERSION';t='THEME';a='AJAXLOCATION';", live,
+                Map.of("AJAXLOCATION", "/jwajax", "THEME", "fixed"));
+        Map<SiteLoaderTemplate.Slot, String> values = new EnumMap<>(SiteLoaderTemplate.Slot.class);
+
+        SiteLoaderTemplate first = source.get();
+        assertEquals("v='1.0';t='fixed';a='/jwajax';", first.render(values)
+                                                          .toString());
+        assertSame(first, source.get(), "An unchanged map keeps the parsed template");
+
+        live.put("VERSION", new StringBuilder("2.0"));
+        live.put("THEME", "live");
+        live.put("AJAXLOCATION", "/other");
+        assertEquals("v='2.0';t='fixed';a='/jwajax';", source.get()
+                                                          .render(values)
+                                                          .toString());
+    }
+}
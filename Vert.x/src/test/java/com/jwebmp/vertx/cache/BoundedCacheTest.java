@@ -0,0 +1,43 @@
+package com.jwebmp.vertx.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest
+{
+    @Test
+    void evictsLeastRecentlyUsed()
+    {
+        BoundedCache<String, String> cache = new BoundedCache<>(1);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(0.5, cache.getHitRate());
+    }
+
+    @Test
+    void expiresEntries() throws InterruptedException
+    {
+        BoundedCache<String, String> cache = new BoundedCache<>(8);
+        cache.put("a", "1", 1, TimeUnit.MILLISECONDS);
+        cache.put("b", "2");
+        Thread.sleep(5);
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+    }
+
+    @Test
+    void loadsOnMiss()
+    {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(8);
+        assertEquals(3, cache.get("abc", String::length));
+        assertEquals(3, cache.get("abc", key -> fail("Should be cached")));
+        assertEquals(1, cache.getHitCount());
+    }
+}
@@ -0,0 +1,35 @@
+package com.jwebmp.vertx.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static com.jwebmp.interception.services.StaticStrings.CSS_LOCATION;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CssCacheTest
+{
+    @Test
+    void linksThePageUntilRendered()
+    {
+        CssCache cache = new CssCache();
+        assertEquals(CSS_LOCATION + "?page=%2Fhome", cache.urlFor("HomePage", "/home"));
+    }
+
+    @Test
+    void linksTheVersionOnceRendered()
+    {
+        CssCache cache = new CssCache();
+        RenderedContent css = cache.put("HomePage", "body{}");
+        String url = cache.urlFor("HomePage", "/home");
+        assertEquals(CSS_LOCATION + "/" + css.version() + ".css?page=%2Fhome", url);
+        assertSame(css, cache.getVersion(css.version() + ".css"));
+    }
+
+    @Test
+    void replacesOnlyTheStylesheetLink()
+    {
+        String html = "<link rel=\"stylesheet\" href=\"" + CSS_LOCATION + "\"><link rel='stylesheet' href='" + CSS_LOCATION + "'>"
+                + "<link rel=\"stylesheet\" href=\"" + CSS_LOCATION + "/other.css\">";
+        assertEquals("<link rel=\"stylesheet\" href=\"/v.css?page=%2F\"><link rel='stylesheet' href='/v.css?page=%2F'>"
+                + "<link rel=\"stylesheet\" href=\"" + CSS_LOCATION + "/other.css\">", CssCache.link(html, "/v.css?page=%2F"));
+    }
+}
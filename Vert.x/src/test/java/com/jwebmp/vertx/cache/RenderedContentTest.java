@@ -0,0 +1,19 @@
+package com.jwebmp.vertx.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedContentTest
+{
+    @Test
+    void matchesEntityTags()
+    {
+        RenderedContent content = RenderedContent.of("<html></html>");
+        assertTrue(content.matches(content.etag()));
+        assertTrue(content.matches("\"other\", W/" + content.etag()));
+        assertTrue(content.matches("*"));
+        assertFalse(content.matches("\"other\""));
+        assertFalse(content.matches(null));
+    }
+}
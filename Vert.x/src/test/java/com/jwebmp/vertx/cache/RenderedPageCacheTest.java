@@ -0,0 +1,65 @@
+package com.jwebmp.vertx.cache;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpServerRequest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedPageCacheTest
+{
+    private final RenderedPageCache cache = new RenderedPageCache();
+    private final RenderedPageCache.Policy policy = new RenderedPageCache.Policy(TimeUnit.MINUTES.toNanos(1), new PageCacheVariant.Language(), Set.of("sort", "id"));
+
+    private static HttpServerRequest request(String query, String language)
+    {
+        MultiMap params = MultiMap.caseInsensitiveMultiMap();
+        if (query != null)
+        {
+            for (String pair : query.split("&"))
+            {
+                String[] parts = pair.split("=", 2);
+                params.add(parts[0], parts.length > 1 ? parts[1] : "");
+            }
+        }
+        return (HttpServerRequest) Proxy.newProxyInstance(RenderedPageCacheTest.class.getClassLoader(), new Class<?>[]{HttpServerRequest.class},
+                (proxy, method, args) -> switch (method.getName())
+                {
+                    case "query" -> query;
+                    case "params" -> params;
+                    case "getHeader" -> "Accept-Language".equals(String.valueOf(args[0])) ? language : null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Test
+    void keysByTheDeclaredParameters()
+    {
+        String first = cache.keyFor("/list", policy, request("id=1&sort=name", null));
+        assertEquals(first, cache.keyFor("/list", policy, request("sort=name&id=1", null)));
+        assertNotEquals(first, cache.keyFor("/list", policy, request("id=2&sort=name", null)));
+        assertNotEquals(first, cache.keyFor("/list", policy, request(null, null)));
+    }
+
+    @Test
+    void bypassesUndeclaredParameters()
+    {
+        assertNull(cache.keyFor("/list", policy, request("id=1&page=2", null)));
+        assertEquals("/list", cache.keyFor("/list", new RenderedPageCache.Policy(1, new PageCacheVariant.None()), request(null, null)));
+        assertNull(cache.keyFor("/list", new RenderedPageCache.Policy(1, new PageCacheVariant.None()), request("q=x", null)));
+    }
+
+    @Test
+    void keysByLanguage()
+    {
+        assertNotEquals(cache.keyFor("/list", policy, request(null, "en-GB")), cache.keyFor("/list", policy, request(null, "de")));
+        assertEquals(cache.keyFor("/list", policy, request(null, "en-GB")), cache.keyFor("/list", policy, request(null, "en-US,en;q=0.8")));
+        assertEquals("Accept-Language", policy.variant()
+                                              .vary());
+        assertNull(new PageCacheVariant.None().vary());
+    }
+}
@@ -0,0 +1,99 @@
+package com.jwebmp.vertx.implementations;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import com.guicedee.client.CallScopeProperties;
+import com.guicedee.guicedservlets.servlets.services.scopes.CallScope;
+import com.jwebmp.vertx.RequestContext;
+import io.vertx.core.http.HttpServerRequest;
+import net.sf.uadetector.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadableUserAgentProviderTest
+{
+    private static final ReadableUserAgent CHROME = new UserAgent(DeviceCategory.EMPTY, UserAgentFamily.CHROME, "", "", OperatingSystem.EMPTY,
+            "", "", UserAgentType.BROWSER, "", "", VersionNumber.UNKNOWN);
+
+    private final List<String> parsed = new ArrayList<>();
+    private final CallScopeProperties callScopeProperties = new CallScopeProperties();
+    private final RequestContext requestContext = new RequestContext();
+
+    private ReadableUserAgentProvider provider()
+    {
+        UserAgentStringParser parser = (UserAgentStringParser) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{UserAgentStringParser.class},
+                (proxy, method, args) -> {
+                    if (method.getName()
+                              .equals("parse"))
+                    {
+                        parsed.add((String) args[0]);
+                        return CHROME;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        Injector injector = Guice.createInjector(binder -> {
+            binder.bindScope(CallScope.class, Scopes.NO_SCOPE);
+            binder.bind(UserAgentStringParser.class)
+                  .toInstance(parser);
+            binder.bind(CallScopeProperties.class)
+                  .toInstance(callScopeProperties);
+            binder.bind(RequestContext.class)
+                  .toInstance(requestContext);
+        });
+        return injector.getInstance(ReadableUserAgentProvider.class);
+    }
+
+    private static HttpServerRequest request(String userAgent)
+    {
+        return (HttpServerRequest) Proxy.newProxyInstance(ReadableUserAgentProviderTest.class.getClassLoader(), new Class<?>[]{HttpServerRequest.class},
+                (proxy, method, args) -> {
+                    if (isUserAgentHeader(method, args))
+                    {
+                        return userAgent;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static boolean isUserAgentHeader(Method method, Object[] args)
+    {
+        return method.getName()
+                     .equals("getHeader") && "User-Agent".equals(String.valueOf(args[0]));
+    }
+
+    @Test
+    void fallsBackToTheLegacyScopeProperty()
+    {
+        callScopeProperties.getProperties()
+                           .put("HttpServerRequest", request("Mozilla/5.0 Chrome"));
+        assertSame(CHROME, provider().get());
+        assertEquals(List.of("Mozilla/5.0 Chrome"), parsed);
+    }
+
+    @Test
+    void defaultsWithoutAUserAgentHeader()
+    {
+        callScopeProperties.getProperties()
+                           .put("HttpServerRequest", request(null));
+        assertEquals(ReadableUserAgentProvider.defaultAgent(), provider().get());
+        assertTrue(parsed.isEmpty());
+    }
+
+    @Test
+    void parsesTheSameHeaderOnce()
+    {
+        callScopeProperties.getProperties()
+                           .put("HttpServerRequest", request("Mozilla/5.0 Chrome"));
+        ReadableUserAgentProvider provider = provider();
+        provider.get();
+        provider.get();
+        assertEquals(1, parsed.size());
+    }
+}
@@ -0,0 +1,44 @@
+package com.jwebmp.vertx.implementations;
+
+import com.google.inject.Guice;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StompBroadcasterTest
+{
+    private final Vertx vertx = Vertx.vertx();
+
+    @AfterEach
+    void stop() throws Exception
+    {
+        vertx.close()
+             .toCompletionStage()
+             .toCompletableFuture()
+             .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void publishesStringsOnTheStompAddress() throws Exception
+    {
+        StompBroadcaster broadcaster = Guice.createInjector(binder -> binder.bind(Vertx.class)
+                                                                            .toInstance(vertx))
+                                            .getInstance(StompBroadcaster.class);
+        CompletableFuture<Object> received = new CompletableFuture<>();
+        vertx.eventBus()
+             .consumer(StompBroadcaster.DESTINATION_PREFIX + "group", message -> received.complete(message.body()))
+             .completion()
+             .toCompletionStage()
+             .toCompletableFuture()
+             .get(5, TimeUnit.SECONDS);
+
+        broadcaster.publish("group", "{\"hello\":1}");
+        assertEquals("{\"hello\":1}", received.get(5, TimeUnit.SECONDS));
+        assertEquals(1, broadcaster.getFrameCount());
+    }
+}
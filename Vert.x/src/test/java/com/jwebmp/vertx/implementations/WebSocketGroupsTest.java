@@ -0,0 +1,141 @@
+package com.jwebmp.vertx.implementations;
+
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebSocketGroupsTest
+{
+    /**
+     * A socket that records the messages written to it
+     */
+    static final class TestSocket
+    {
+        final String id;
+        final List<String> messages = new ArrayList<>();
+        boolean closed;
+        String subProtocol;
+        final ServerWebSocket socket;
+
+        TestSocket(String id)
+        {
+            this.id = id;
+            socket = (ServerWebSocket) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ServerWebSocket.class}, (proxy, method, args) -> switch (method.getName())
+            {
+                case "textHandlerID" -> id;
+                case "isClosed" -> closed;
+                case "subProtocol" -> subProtocol;
+                case "writeTextMessage" ->
+                {
+                    messages.add((String) args[0]);
+                    yield null;
+                }
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "socket " + id;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+    }
+
+    @Test
+    void membership()
+    {
+        WebSocketGroups groups = new WebSocketGroups();
+        groups.add("a", "1");
+        groups.add("a", "2");
+        groups.add("b", "1");
+        assertEquals(Map.of("a", 2, "b", 1), groups.getGroupSizes());
+        assertEquals(2, groups.getConnectionCount());
+
+        groups.remove("a", "2");
+        assertEquals(1, groups.getGroupSize("a"));
+
+        groups.removeConnection("1");
+        assertFalse(groups.hasMembers("a"));
+        assertFalse(groups.hasMembers("b"));
+        assertEquals(0, groups.getConnectionCount());
+    }
+
+    @Test
+    void deliversToTheMembersOfAGroup()
+    {
+        WebSocketGroups groups = new WebSocketGroups();
+        TestSocket first = new TestSocket("1");
+        TestSocket second = new TestSocket("2");
+        TestSocket other = new TestSocket("3");
+        groups.add("a", groups.register(first.socket));
+        groups.add("a", groups.register(second.socket));
+        groups.add("b", groups.register(other.socket));
+
+        assertEquals(2, groups.deliver("a", "hello"));
+        assertEquals(List.of(WebSocketGroups.frame("a", "hello")), first.messages);
+        assertEquals(List.of(WebSocketGroups.frame("a", "hello")), second.messages);
+        assertTrue(other.messages.isEmpty());
+        assertTrue(groups.deliverTo("3", "3", "only you"));
+        assertEquals(List.of(WebSocketGroups.frame("3", "only you")), other.messages);
+        assertEquals(0, groups.deliver("none", "nobody"));
+    }
+
+    @Test
+    void evictsClosedSockets()
+    {
+        WebSocketGroups groups = new WebSocketGroups();
+        TestSocket open = new TestSocket("1");
+        TestSocket closed = new TestSocket("2");
+        groups.add("a", groups.register(open.socket));
+        groups.add("a", groups.register(closed.socket));
+        closed.closed = true;
+
+        assertEquals(1, groups.deliver("a", "hello"));
+        assertTrue(closed.messages.isEmpty());
+        assertEquals(1, groups.getGroupSize("a"));
+        assertEquals(1, groups.getConnectionCount());
+        assertFalse(groups.deliverTo("2", "2", "gone"));
+    }
+
+    @Test
+    void framesMessagesAsBridgeMessages()
+    {
+        JsonObject frame = new JsonObject(WebSocketGroups.frame("a", "{\"id\":1}"));
+        assertEquals("rec", frame.getString("type"));
+        assertEquals("a", frame.getString("address"));
+        assertEquals("{\"id\":1}", frame.getString("body"));
+    }
+
+    @Test
+    void framesMessagesForStompSockets()
+    {
+        WebSocketGroups groups = new WebSocketGroups();
+        TestSocket socket = new TestSocket("1");
+        socket.subProtocol = "v12.stomp";
+        groups.add("a", groups.register(socket.socket));
+
+        assertEquals(1, groups.deliver("a", "héllo"));
+        String frame = socket.messages.get(0);
+        assertTrue(frame.startsWith("MESSAGE\ndestination:a\nsubscription:a\n"));
+        assertTrue(frame.contains("content-length:6\n"));
+        assertTrue(frame.endsWith("\n\nhéllo\0"));
+    }
+
+    @Test
+    void removesSocketsWhenTheyClose()
+    {
+        WebSocketGroups groups = new WebSocketGroups();
+        TestSocket socket = new TestSocket("1");
+        groups.add("a", groups.register(socket.socket));
+        groups.add("b", groups.register(socket.socket));
+
+        groups.closed(socket.socket);
+        assertFalse(groups.hasMembers("a"));
+        assertFalse(groups.hasMembers("b"));
+        assertEquals(0, groups.getConnectionCount());
+    }
+}
@@ -0,0 +1,35 @@
+package com.jwebmp.vertx.load;
+
+import lombok.extern.java.Log;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the load harness when -Djw.load=true, failing if the run is below the baseline named by jw.load.baseline
+ */
+@Log
+@EnabledIfSystemProperty(named = "jw.load", matches = "true")
+class JWebMPVertxLoadTest
+{
+    @Test
+    void load() throws Exception
+    {
+        LoadHarness harness = new LoadHarness();
+        try
+        {
+            harness.start();
+            harness.run();
+            log.info(harness.report());
+            List<String> regressions = harness.checkBaseline();
+            assertTrue(regressions.isEmpty(), String.join("\n", regressions));
+        }
+        finally
+        {
+            harness.stop();
+        }
+    }
+}
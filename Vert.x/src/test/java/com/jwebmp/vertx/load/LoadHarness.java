@@ -0,0 +1,335 @@
+package com.jwebmp.vertx.load;
+
+import com.guicedee.client.IGuiceContext;
+import com.jwebmp.vertx.DispatchRegistry;
+import com.jwebmp.vertx.JWebMPVertx;
+import com.jwebmp.vertx.LatencyHistogram;
+import com.jwebmp.vertx.PageRouteIndex;
+import com.jwebmp.vertx.cache.CssCache;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.jwebmp.interception.services.StaticStrings.*;
+
+/**
+ * Drives the JWebMP router over HTTP on an ephemeral port with a mix of page, CSS, script and AJAX requests.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ *     <li>jw.load.concurrency - requests kept in flight (default 32)</li>
+ *     <li>jw.load.requests - measured requests (default 20000), after jw.load.warmup unmeasured ones (default 2000)</li>
+ *     <li>jw.load.mix - the weight of each request kind (default page=50,css=20,script=20,ajax=10)</li>
+ *     <li>jw.load.baseline - a properties file of the minimum rps and the maximum p99.ms, per kind as kind.rps and
+ *     kind.p99.ms, or for all requests as rps and p99.ms</li>
+ * </ul>
+ */
+public class LoadHarness
+{
+    /**
+     * The kinds of request sent
+     */
+    public enum Kind
+    {
+        Page,
+        Css,
+        Script,
+        Ajax
+    }
+
+    private final int concurrency = Integer.getInteger("jw.load.concurrency", 32);
+    private final int requests = Integer.getInteger("jw.load.requests", 20000);
+    private final int warmup = Integer.getInteger("jw.load.warmup", 2000);
+    private final Map<Kind, Integer> mix = parseMix(System.getProperty("jw.load.mix", "page=50,css=20,script=20,ajax=10"));
+
+    private final Map<Kind, LatencyHistogram> latencies = new EnumMap<>(Kind.class);
+    private final Map<Kind, LongAdder> failures = new EnumMap<>(Kind.class);
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private Vertx vertx;
+    private HttpServer server;
+    private WebClient client;
+    private String pageUrl;
+    private String ajaxBody;
+    private long elapsedNanos;
+
+    public LoadHarness()
+    {
+        for (Kind kind : Kind.values())
+        {
+            latencies.put(kind, new LatencyHistogram());
+            failures.put(kind, new LongAdder());
+        }
+    }
+
+    static Map<Kind, Integer> parseMix(String mix)
+    {
+        Map<Kind, Integer> weights = new EnumMap<>(Kind.class);
+        for (String entry : mix.split(","))
+        {
+            String[] pair = entry.split("=");
+            if (pair.length == 2)
+            {
+                for (Kind kind : Kind.values())
+                {
+                    if (kind.name()
+                            .equalsIgnoreCase(pair[0].trim()))
+                    {
+                        weights.put(kind, Integer.parseInt(pair[1].trim()));
+                    }
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Boots the injection context and serves the JWebMP router on an ephemeral port
+     */
+    public void start() throws Exception
+    {
+        IGuiceContext.instance()
+                     .inject();
+        vertx = IGuiceContext.get(Vertx.class);
+        JWebMPVertx configurator = IGuiceContext.get(JWebMPVertx.class);
+        HttpServer httpServer = configurator.builder(vertx.createHttpServer());
+        server = httpServer.requestHandler(configurator.getRouter())
+                           .listen(0)
+                           .toCompletionStage()
+                           .toCompletableFuture()
+                           .get(30, TimeUnit.SECONDS);
+        client = WebClient.create(vertx, new WebClientOptions().setDefaultHost("localhost")
+                                                               .setDefaultPort(server.actualPort())
+                                                               .setMaxPoolSize(concurrency)
+                                                               .setKeepAlive(true));
+        pageUrl = PageRouteIndex.getInstance()
+                                .getRoutes()
+                                .stream()
+                                .map(PageRouteIndex.PageRoute::url)
+                                .findFirst()
+                                .orElse("/");
+        String eventClass = DispatchRegistry.events()
+                                            .getClassNames()
+                                            .stream()
+                                            .findFirst()
+                                            .orElse("");
+        ajaxBody = "{\"className\":\"" + eventClass.replace('.', '_') + "\",\"componentId\":\"load\",\"eventType\":\"click\"}";
+    }
+
+    /**
+     * Sends the warm up requests and then the measured ones
+     */
+    public void run() throws InterruptedException
+    {
+        drive(warmup, false);
+        long start = System.nanoTime();
+        drive(requests, true);
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void drive(int count, boolean measured) throws InterruptedException
+    {
+        if (count <= 0)
+        {
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(count);
+        AtomicInteger remaining = new AtomicInteger(count);
+        for (int i = 0; i < Math.min(concurrency, count); i++)
+        {
+            sendNext(remaining, done, measured);
+        }
+        if (!done.await(10, TimeUnit.MINUTES))
+        {
+            throw new IllegalStateException("The load run did not finish, " + done.getCount() + " requests outstanding");
+        }
+    }
+
+    private void sendNext(AtomicInteger remaining, CountDownLatch done, boolean measured)
+    {
+        if (remaining.getAndDecrement() <= 0)
+        {
+            return;
+        }
+        Kind kind = pickKind();
+        long start = System.nanoTime();
+        send(kind).onComplete(result -> {
+            long nanos = System.nanoTime() - start;
+            if (measured)
+            {
+                latencies.get(kind)
+                         .record(nanos);
+                total.record(nanos);
+                if (result.failed() || isError(result.result()
+                                                     .statusCode()))
+                {
+                    failures.get(kind)
+                            .increment();
+                }
+            }
+            done.countDown();
+            sendNext(remaining, done, measured);
+        });
+    }
+
+    /**
+     * Anything but a success or a not modified answer to a conditional request counts as an error, so 4xx responses
+     * from a broken route or mix are not measured as fast successes
+     */
+    static boolean isError(int statusCode)
+    {
+        return (statusCode < 200 || statusCode >= 300) && statusCode != 304;
+    }
+
+    private Kind pickKind()
+    {
+        int sum = 0;
+        for (int weight : mix.values())
+        {
+            sum += weight;
+        }
+        int pick = ThreadLocalRandom.current()
+                                    .nextInt(Math.max(sum, 1));
+        for (Map.Entry<Kind, Integer> entry : mix.entrySet())
+        {
+            pick -= entry.getValue();
+            if (pick < 0)
+            {
+                return entry.getKey();
+            }
+        }
+        return Kind.Page;
+    }
+
+    private Future<HttpResponse<Buffer>> send(Kind kind)
+    {
+        return switch (kind)
+        {
+            case Page -> client.request(HttpMethod.GET, pageUrl)
+                               .send();
+            case Css -> client.request(HttpMethod.GET, CSS_LOCATION)
+                              .addQueryParam(CssCache.PAGE_PARAMETER, pageUrl)
+                              .send();
+            case Script -> withReferer(client.request(HttpMethod.GET, JW_SCRIPT_LOCATION)).send();
+            case Ajax -> withReferer(client.request(HttpMethod.POST, AJAX_SCRIPT_LOCATION)).putHeader("Content-Type", "application/json")
+                                                                                            .sendBuffer(Buffer.buffer(ajaxBody));
+        };
+    }
+
+    private HttpRequest<Buffer> withReferer(HttpRequest<Buffer> request)
+    {
+        return request.putHeader("Referer", "http://localhost:" + server.actualPort() + pageUrl);
+    }
+
+    /**
+     * @return The p50, p99 and p999 latency and the request rate of each kind and of all requests
+     */
+    public String report()
+    {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-8s %10s %10s %10s %10s %10s %8s%n", "kind", "requests", "rps", "p50 ms", "p99 ms", "p999 ms", "errors"));
+        for (Kind kind : Kind.values())
+        {
+            appendRow(out, kind.name(), latencies.get(kind), failures.get(kind)
+                                                                     .sum());
+        }
+        appendRow(out, "all", total, failures.values()
+                                             .stream()
+                                             .mapToLong(LongAdder::sum)
+                                             .sum());
+        return out.toString();
+    }
+
+    private void appendRow(StringBuilder out, String name, LatencyHistogram histogram, long errors)
+    {
+        out.append(String.format("%-8s %10d %10.0f %10.2f %10.2f %10.2f %8d%n", name, histogram.getCount(), rps(histogram),
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), errors));
+    }
+
+    private double rps(LatencyHistogram histogram)
+    {
+        return elapsedNanos == 0 ? 0 : histogram.getCount() / (elapsedNanos / 1_000_000_000d);
+    }
+
+    private static double millis(long nanos)
+    {
+        return nanos / 1_000_000d;
+    }
+
+    /**
+     * Compares the run to the baseline file named by jw.load.baseline, if any
+     *
+     * @return A description of every result below its baseline, empty if all are met or there is no baseline
+     */
+    public List<String> checkBaseline() throws IOException
+    {
+        List<String> regressions = new ArrayList<>();
+        String baselineFile = System.getProperty("jw.load.baseline");
+        if (baselineFile == null || !Files.exists(Path.of(baselineFile)))
+        {
+            return regressions;
+        }
+        Properties baseline = new Properties();
+        try (InputStream in = Files.newInputStream(Path.of(baselineFile)))
+        {
+            baseline.load(in);
+        }
+        check(regressions, baseline, "", total);
+        for (Kind kind : Kind.values())
+        {
+            check(regressions, baseline, kind.name()
+                                             .toLowerCase(Locale.ROOT) + ".", latencies.get(kind));
+        }
+        return regressions;
+    }
+
+    private void check(List<String> regressions, Properties baseline, String prefix, LatencyHistogram histogram)
+    {
+        String minRps = baseline.getProperty(prefix + "rps");
+        if (minRps != null && rps(histogram) < Double.parseDouble(minRps))
+        {
+            regressions.add(prefix + "rps " + String.format("%.0f", rps(histogram)) + " is below " + minRps);
+        }
+        String maxP99 = baseline.getProperty(prefix + "p99.ms");
+        if (maxP99 != null && millis(histogram.getValueAtPercentile(99)) > Double.parseDouble(maxP99))
+        {
+            regressions.add(prefix + "p99 " + String.format("%.2f", millis(histogram.getValueAtPercentile(99))) + "ms is above " + maxP99 + "ms");
+        }
+    }
+
+    /**
+     * Stops the client and the server
+     */
+    public void stop() throws Exception
+    {
+        if (client != null)
+        {
+            client.close();
+        }
+        if (server != null)
+        {
+            server.close()
+                  .toCompletionStage()
+                  .toCompletableFuture()
+                  .get(30, TimeUnit.SECONDS);
+        }
+    }
+}